@@ -50,6 +50,12 @@ awslocal dynamodb wait table-exists \
 
 echo "✓ DynamoDB table 'my-table' created successfully"
 
+echo ""
+echo "Creating S3 bucket for offloaded payloads: payloads"
+awslocal s3 mb s3://payloads --region us-east-1
+
+echo "✓ S3 bucket 'payloads' created successfully"
+
 echo ""
 echo "Verifying Kinesis Stream..."
 awslocal kinesis describe-stream \
@@ -74,6 +80,7 @@ echo ""
 echo "Resources created:"
 echo "  - Kinesis Stream: my-stream (1 shard)"
 echo "  - DynamoDB Table: my-table (id: String, timestamp: Number)"
+echo "  - S3 Bucket: payloads (large payload offload)"
 echo ""
 echo "LocalStack endpoint: http://localhost:4566"
 echo ""
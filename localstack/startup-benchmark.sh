@@ -0,0 +1,86 @@
+#!/bin/bash
+#
+# Startup benchmark: measures time-to-first-record against LocalStack for
+#   1. the plain executable jar
+#   2. the fast-startup build (Spring AOT + AppCDS archive)
+#
+# Usage (from the project root, with LocalStack running):
+#   localstack/startup-benchmark.sh [runs]
+#
+# The application logs "Time to first record: N ms after JVM start" once the
+# first record has been written; that value is what is reported here.
+
+set -euo pipefail
+
+RUNS=${1:-3}
+ENDPOINT=http://localhost:4566
+STREAM=my-stream
+MAIN_CLASS=com.example.kinesis.KinesisDynamoDbApplication
+WORK_DIR=target/startup-benchmark
+MARKER="Time to first record:"
+
+export AWS_ACCESS_KEY_ID=test
+export AWS_SECRET_ACCESS_KEY=test
+export AWS_DEFAULT_REGION=us-east-1
+
+echo "Building fast-startup jar..."
+mvn -B -q -Pfast-startup package -DskipTests
+JAR=$(ls target/kinesis-dynamodb-consumer-*.jar | grep -v original | head -n 1)
+
+echo "Extracting jar for class data sharing..."
+rm -rf "$WORK_DIR"
+mkdir -p "$WORK_DIR/app"
+(cd "$WORK_DIR/app" && jar -xf "../../../$JAR")
+CLASSPATH="$WORK_DIR/app/BOOT-INF/classes:$WORK_DIR/app/BOOT-INF/lib/*"
+
+echo "Creating CDS archive (training run exits once the context is refreshed)..."
+java -XX:ArchiveClassesAtExit="$WORK_DIR/app.jsa" \
+     -Dspring.context.exit=onRefresh \
+     -Dspring.aot.enabled=true \
+     -Dspring.profiles.active=local \
+     -cp "$CLASSPATH" "$MAIN_CLASS" > "$WORK_DIR/training.log" 2>&1
+
+# Keep records flowing so a record is available as soon as leases are taken
+produce() {
+    while true; do
+        aws kinesis put-record --stream-name "$STREAM" --partition-key bench \
+            --data "{\"id\":\"bench-$RANDOM\",\"eventType\":\"BENCHMARK\"}" \
+            --cli-binary-format raw-in-base64-out \
+            --endpoint-url "$ENDPOINT" > /dev/null 2>&1 || true
+        sleep 0.2
+    done
+}
+
+measure() {
+    local name=$1
+    shift
+    local log="$WORK_DIR/$name.log"
+    # A fresh application name per run gives every start its own lease table,
+    # so no run waits for leases held by the previous one to expire
+    "$@" --aws.kinesis.application-name="startup-bench-$name-$$" > "$log" 2>&1 &
+    local pid=$!
+    local value=""
+    for _ in $(seq 1 600); do
+        value=$(grep -o "$MARKER [0-9]*" "$log" | grep -o "[0-9]*$" || true)
+        if [ -n "$value" ]; then
+            break
+        fi
+        sleep 0.1
+    done
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+    echo "${value:-timeout}"
+}
+
+produce &
+PRODUCER=$!
+trap 'kill $PRODUCER 2>/dev/null || true' EXIT
+
+printf "%-6s %-14s %-14s\n" "run" "jar (ms)" "aot+cds (ms)"
+for run in $(seq 1 "$RUNS"); do
+    baseline=$(measure "jar-$run" java -Dspring.profiles.active=local -jar "$JAR")
+    fast=$(measure "fast-$run" java -XX:SharedArchiveFile="$WORK_DIR/app.jsa" \
+        -Dspring.aot.enabled=true -Dspring.profiles.active=local \
+        -cp "$CLASSPATH" "$MAIN_CLASS")
+    printf "%-6s %-14s %-14s\n" "$run" "$baseline" "$fast"
+done
@@ -1,32 +1,43 @@
 package com.example.kinesis;
 
-import com.example.kinesis.processor.RecordProcessorFactory;
+import com.example.kinesis.backfill.BackfillCoordinator;
+import com.example.kinesis.config.KinesisSchedulerFactory;
+import com.example.kinesis.config.StreamsProperties;
+import com.example.kinesis.config.WorkerIdentity;
+import com.example.kinesis.processor.DrainStatistics;
+import com.example.kinesis.processor.StartupMetrics;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
-import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
-import software.amazon.kinesis.common.ConfigsBuilder;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.ConfigurableApplicationContext;
 import software.amazon.kinesis.coordinator.Scheduler;
-import software.amazon.kinesis.retrieval.polling.PollingConfig;
 
-import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @SpringBootApplication
+@ConfigurationPropertiesScan
 @RequiredArgsConstructor
 public class KinesisDynamoDbApplication implements CommandLineRunner {
 
-    private final RecordProcessorFactory recordProcessorFactory;
-    private final KinesisAsyncClient kinesisAsyncClient;
-    private final DynamoDbAsyncClient dynamoDbAsyncClient;
-    private final CloudWatchAsyncClient cloudWatchAsyncClient;
-    private final Region region;
+    private static final long BACKFILL_CHECK_SECONDS = 5L;
+
+    private final KinesisSchedulerFactory kinesisSchedulerFactory;
+    private final DrainStatistics drainStatistics;
+    private final StartupMetrics startupMetrics;
+    private final StreamsProperties streamsProperties;
+    private final BackfillCoordinator backfillCoordinator;
+    private final ConfigurableApplicationContext applicationContext;
 
     @Value("${aws.kinesis.stream-name}")
     private String streamName;
@@ -34,6 +45,15 @@ public class KinesisDynamoDbApplication implements CommandLineRunner {
     @Value("${aws.kinesis.application-name}")
     private String applicationName;
 
+    @Value("${aws.kinesis.worker-id:}")
+    private String configuredWorkerId;
+
+    @Value("${aws.kinesis.shutdown-timeout-ms:20000}")
+    private long shutdownTimeoutMillis;
+
+    private Scheduler scheduler;
+    private ScheduledExecutorService backfillWatcher;
+
     public static void main(String[] args) {
         SpringApplication.run(KinesisDynamoDbApplication.class, args);
     }
@@ -41,41 +61,85 @@ public class KinesisDynamoDbApplication implements CommandLineRunner {
     @Override
     public void run(String... args) throws Exception {
         log.info("Starting Kinesis Consumer Application");
-        log.info("Stream Name: {}", streamName);
+        if (streamsProperties.isMultiStream()) {
+            log.info("Stream Names: {}", streamsProperties.getStreams().stream()
+                    .map(StreamsProperties.Stream::getName).toList());
+        } else {
+            log.info("Stream Name: {}", streamName);
+        }
         log.info("Application Name: {}", applicationName);
 
-        ConfigsBuilder configsBuilder = new ConfigsBuilder(
-                streamName,
-                applicationName,
-                kinesisAsyncClient,
-                dynamoDbAsyncClient,
-                cloudWatchAsyncClient,
-                UUID.randomUUID().toString(),
-                recordProcessorFactory
-        );
-
-        Scheduler scheduler = new Scheduler(
-                configsBuilder.checkpointConfig(),
-                configsBuilder.coordinatorConfig(),
-                configsBuilder.leaseManagementConfig(),
-                configsBuilder.lifecycleConfig(),
-                configsBuilder.metricsConfig(),
-                configsBuilder.processorConfig(),
-                configsBuilder.retrievalConfig().retrievalSpecificConfig(
-                        new PollingConfig(streamName, kinesisAsyncClient)
-                )
-        );
+        String workerId = WorkerIdentity.resolve(configuredWorkerId);
+        log.info("Worker Id: {}", workerId);
+
+        scheduler = kinesisSchedulerFactory.create(workerId);
 
         Thread schedulerThread = new Thread(scheduler);
         schedulerThread.setDaemon(true);
         schedulerThread.start();
+        if (backfillCoordinator.isEnabled() && backfillCoordinator.properties().isExitWhenFinished()) {
+            watchBackfillCompletion();
+        }
 
-        log.info("Kinesis Consumer started successfully");
+        log.info("Kinesis Consumer started successfully {} ms after JVM start",
+                startupMetrics.millisSinceJvmStart());
+    }
+
+    /**
+     * Exits once the backfill is complete on this worker. Closing the context
+     * runs {@link #shutdown()}, which releases the leases, so workers still
+     * backfilling can take over any shard this one held.
+     */
+    private void watchBackfillCompletion() {
+        backfillWatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "backfill-completion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        backfillWatcher.scheduleWithFixedDelay(() -> {
+            if (backfillCoordinator.isComplete(System.currentTimeMillis())) {
+                log.info("Backfill complete on this worker - {} shards finished, shutting down",
+                        backfillCoordinator.finishedShards());
+                System.exit(SpringApplication.exit(applicationContext, () -> 0));
+            }
+        }, BACKFILL_CHECK_SECONDS, BACKFILL_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
 
-        // Keep the application running
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            log.info("Shutting down Kinesis Consumer");
+    /**
+     * Runs from Spring's shutdown hook before the AWS clients are closed. The
+     * scheduler stops fetching, waits for in-flight batches and lets every
+     * processor checkpoint what it has persisted, so the next worker does not
+     * replay it. Falls back to an immediate shutdown once the deadline passes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (backfillWatcher != null) {
+            backfillWatcher.shutdown();
+        }
+        if (scheduler == null) {
+            return;
+        }
+        log.info("Shutting down Kinesis Consumer (graceful, timeout {} ms)", shutdownTimeoutMillis);
+        long start = System.nanoTime();
+        Future<Boolean> gracefulShutdown = scheduler.startGracefulShutdown();
+        try {
+            boolean completed = gracefulShutdown.get(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (!completed) {
+                log.warn("Graceful shutdown did not complete cleanly, forcing shutdown");
+                scheduler.shutdown();
+            }
+        } catch (TimeoutException e) {
+            log.warn("Graceful shutdown timed out after {} ms, forcing shutdown", shutdownTimeoutMillis);
+            scheduler.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduler.shutdown();
+        } catch (ExecutionException e) {
+            log.error("Error during graceful shutdown", e.getCause());
             scheduler.shutdown();
-        }));
+        }
+        log.info("Kinesis Consumer stopped in {} ms - drained {} shards, {} records checkpointed at shutdown, {} shards failed",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                drainStatistics.shardsDrained(), drainStatistics.recordsDrained(), drainStatistics.shardsFailed());
     }
 }
@@ -0,0 +1,152 @@
+package com.example.kinesis.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from non-negative {@code long} keys to {@code long}
+ * values, with linear probing and no boxing. Absent keys read as 0. Not
+ * thread-safe; each shard's aggregator owns its maps.
+ */
+final class LongLongHashMap {
+
+    private static final long EMPTY = -1L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    LongLongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongLongHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Adds {@code delta} to the value of {@code key}.
+     *
+     * @return the new value
+     */
+    long addTo(long key, long delta) {
+        checkKey(key);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] += delta;
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return delta;
+    }
+
+    long get(long key) {
+        checkKey(key);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0L;
+    }
+
+    /**
+     * Removes {@code key}.
+     *
+     * @return its value, or 0 if it was absent
+     */
+    long remove(long key) {
+        checkKey(key);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                long value = values[slot];
+                shiftBack(slot);
+                size--;
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0L;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Closes the gap left at {@code gap} by moving later entries of the same
+     * probe run back, so lookups never stop early at a removed slot.
+     */
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = slot(key);
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0L;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        // Murmur3 finalizer: window indexes are sequential, so spread them
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private static void checkKey(long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("keys must be non-negative, got " + key);
+        }
+    }
+}
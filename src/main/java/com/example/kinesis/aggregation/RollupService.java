@@ -0,0 +1,94 @@
+package com.example.kinesis.aggregation;
+
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.model.Rollup;
+import com.example.kinesis.service.DynamoDbService;
+import com.example.kinesis.service.EventRouter;
+import com.example.kinesis.service.Route;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the {@link WindowAggregator} of each shard and writes the rollups
+ * they produce.
+ */
+@Slf4j
+@Component
+public class RollupService {
+
+    private final DynamoDbService dynamoDbService;
+    private final EventRouter eventRouter;
+    private final ProcessingProperties.Aggregation settings;
+
+    private final Counter writtenCounter;
+    private final Counter keptCounter;
+    private final Counter failedCounter;
+    private final Counter lateCounter;
+
+    public RollupService(DynamoDbService dynamoDbService, EventRouter eventRouter,
+                         ProcessingProperties processingProperties, MeterRegistry meterRegistry) {
+        this.dynamoDbService = dynamoDbService;
+        this.eventRouter = eventRouter;
+        this.settings = processingProperties.getAggregation();
+        this.writtenCounter = rollupCounter("written", meterRegistry);
+        this.keptCounter = rollupCounter("kept", meterRegistry);
+        this.failedCounter = rollupCounter("failed", meterRegistry);
+        this.lateCounter = Counter.builder("kinesis.consumer.aggregation.late.records")
+                .description("Records that arrived for a window that was already closed and were not counted")
+                .register(meterRegistry);
+
+        for (Route route : eventRouter.routes()) {
+            if (route.isAggregate() && !settings.isEnabled()) {
+                throw new IllegalStateException("Route '" + route.getName()
+                        + "' aggregates but processing.aggregation.enabled is false");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * @return a new aggregator for the shard, or null when aggregation is disabled
+     */
+    public WindowAggregator newAggregator(String shardId) {
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        return new WindowAggregator(shardId, settings.getWindowMillis(), settings.getAllowedLatenessMillis(),
+                eventRouter, this);
+    }
+
+    /**
+     * @return false if the rollup could not be written and its window must stay open
+     */
+    boolean write(Rollup rollup) {
+        try {
+            if (dynamoDbService.saveRollup(settings.getTableName(), rollup)) {
+                writtenCounter.increment();
+            } else {
+                keptCounter.increment();
+            }
+            return true;
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("Error writing rollup {} for shard {} to {}",
+                    rollup.getRollupKey(), rollup.getShardId(), settings.getTableName(), e);
+            return false;
+        }
+    }
+
+    void recordLate() {
+        lateCounter.increment();
+    }
+
+    private static Counter rollupCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("kinesis.consumer.aggregation.rollups")
+                .description("Rollup writes by outcome; kept means the stored rollup already had a higher count")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
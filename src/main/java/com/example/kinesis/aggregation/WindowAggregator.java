@@ -0,0 +1,236 @@
+package com.example.kinesis.aggregation;
+
+import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.model.Rollup;
+import com.example.kinesis.service.EventRouter;
+import com.example.kinesis.service.Route;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tumbling-window counters for one shard. Events of aggregated routes are
+ * counted per (event type, window) by their approximate arrival time; a
+ * window is written as rollups once the newest arrival time on the shard is
+ * past its end plus the allowed lateness. While the shard is read at the tip,
+ * the wall clock moves that watermark as well, so the last window of a shard
+ * that goes quiet still closes.
+ *
+ * <p>Open windows live only in memory, so the checkpoint must not move past
+ * the first record of any open window: {@link #holdsBefore} and
+ * {@link #checkpointLimit} tell the processor where to stop. After a restart
+ * the open windows are rebuilt from the stream.
+ */
+@Slf4j
+public class WindowAggregator {
+
+    // Low bits of a counter key hold the window index, high bits the event type id
+    private static final int WINDOW_BITS = 44;
+    private static final long MAX_WINDOW_INDEX = (1L << WINDOW_BITS) - 1;
+
+    private final String shardId;
+    private final long windowMillis;
+    private final long allowedLatenessMillis;
+    private final EventRouter eventRouter;
+    private final RollupService rollupService;
+
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    private final List<String> typeNames = new ArrayList<>();
+    private final LongLongHashMap counts = new LongLongHashMap();
+    private final LongLongHashMap bytes = new LongLongHashMap();
+    private final TreeMap<Long, OpenWindow> openWindows = new TreeMap<>();
+
+    private long watermark = Long.MIN_VALUE;
+
+    WindowAggregator(String shardId, long windowMillis, long allowedLatenessMillis, EventRouter eventRouter,
+                     RollupService rollupService) {
+        if (windowMillis < 1) {
+            throw new IllegalArgumentException("windowMillis must be positive, got " + windowMillis);
+        }
+        this.shardId = shardId;
+        this.windowMillis = windowMillis;
+        this.allowedLatenessMillis = allowedLatenessMillis;
+        this.eventRouter = eventRouter;
+        this.rollupService = rollupService;
+    }
+
+    /**
+     * Counts the event if its route aggregates.
+     *
+     * @param index    position of the record in this processor's stream of records
+     * @param previous the record processed just before it, or null if none
+     * @return whether the raw event still has to be written
+     */
+    public boolean add(long index, KinesisClientRecord record, KinesisClientRecord previous, EventRecord event) {
+        Route route = eventRouter.route(event.getEventType());
+        if (!route.isAggregate()) {
+            return true;
+        }
+        Instant arrival = record.approximateArrivalTimestamp();
+        long arrivalMillis = arrival != null ? arrival.toEpochMilli() : System.currentTimeMillis();
+        long window = Math.min(Math.max(arrivalMillis, 0L) / windowMillis, MAX_WINDOW_INDEX);
+
+        OpenWindow open = openWindows.get(window);
+        if (open == null) {
+            if (isClosed(window)) {
+                rollupService.recordLate();
+                log.debug("Not counting record {} on shard: {} - window {} is closed",
+                        record.sequenceNumber(), shardId, window * windowMillis);
+                return route.isRawWrites();
+            }
+            open = new OpenWindow(index, previous);
+            openWindows.put(window, open);
+        }
+
+        int typeId = typeId(event.getEventType());
+        open.types.set(typeId);
+        long key = ((long) typeId << WINDOW_BITS) | window;
+        counts.addTo(key, 1L);
+        bytes.addTo(key, record.data().limit());
+        watermark = Math.max(watermark, arrivalMillis);
+        return route.isRawWrites();
+    }
+
+    /**
+     * Moves the watermark to the allowed lateness before now when the shard
+     * is no further than that behind the tip, since no earlier arrival can
+     * still be unread. Records older than that are counted as late, as they
+     * would be behind newer traffic.
+     *
+     * @param millisBehindLatest the lag the KCL reported for the poll, or null if unknown
+     */
+    public void advanceAtTip(long nowMillis, Long millisBehindLatest) {
+        if (millisBehindLatest != null && millisBehindLatest <= allowedLatenessMillis) {
+            watermark = Math.max(watermark, nowMillis - allowedLatenessMillis);
+        }
+    }
+
+    /**
+     * Writes and forgets every window that has closed. A window whose rollups
+     * could not all be written stays open and is retried on the next call.
+     */
+    public void flushClosed() {
+        flush(false);
+    }
+
+    /**
+     * Writes every open window, e.g. at the end of the shard.
+     *
+     * @return true if no window is left open
+     */
+    public boolean flushAll() {
+        flush(true);
+        return openWindows.isEmpty();
+    }
+
+    /**
+     * Whether an open window started at or before the record at {@code index},
+     * i.e. checkpointing at that record would lose counted but unwritten events.
+     */
+    public boolean holdsBefore(long index) {
+        OpenWindow first = firstOpened();
+        return first != null && first.firstIndex <= index;
+    }
+
+    /**
+     * The last record that can be checkpointed without losing open windows, or
+     * null if no record can be.
+     */
+    public KinesisClientRecord checkpointLimit() {
+        OpenWindow first = firstOpened();
+        return first == null ? null : first.before;
+    }
+
+    public int openWindowCount() {
+        return openWindows.size();
+    }
+
+    private void flush(boolean all) {
+        Iterator<Map.Entry<Long, OpenWindow>> it = openWindows.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, OpenWindow> entry = it.next();
+            long window = entry.getKey();
+            if (!all && !isClosed(window)) {
+                // Windows are ordered, so every later one is still open as well
+                break;
+            }
+            if (writeWindow(window, entry.getValue())) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean writeWindow(long window, OpenWindow open) {
+        long start = window * windowMillis;
+        long now = System.currentTimeMillis();
+        BitSet types = open.types;
+        for (int typeId = types.nextSetBit(0); typeId >= 0; typeId = types.nextSetBit(typeId + 1)) {
+            long key = ((long) typeId << WINDOW_BITS) | window;
+            Rollup rollup = Rollup.builder()
+                    .shardId(shardId)
+                    .eventType(typeNames.get(typeId))
+                    .windowStart(start)
+                    .windowEnd(start + windowMillis)
+                    .count(counts.get(key))
+                    .bytes(bytes.get(key))
+                    .updatedAt(now)
+                    .build();
+            if (!rollupService.write(rollup)) {
+                // Rewriting the ones already written on retry is harmless, the counts are unchanged
+                return false;
+            }
+        }
+        for (int typeId = types.nextSetBit(0); typeId >= 0; typeId = types.nextSetBit(typeId + 1)) {
+            long key = ((long) typeId << WINDOW_BITS) | window;
+            counts.remove(key);
+            bytes.remove(key);
+        }
+        log.debug("Closed window {} on shard: {}", start, shardId);
+        return true;
+    }
+
+    private boolean isClosed(long window) {
+        long end = (window + 1) * windowMillis;
+        return watermark != Long.MIN_VALUE && watermark - allowedLatenessMillis >= end;
+    }
+
+    private OpenWindow firstOpened() {
+        OpenWindow first = null;
+        for (OpenWindow open : openWindows.values()) {
+            if (first == null || open.firstIndex < first.firstIndex) {
+                first = open;
+            }
+        }
+        return first;
+    }
+
+    private int typeId(String eventType) {
+        Integer id = typeIds.get(eventType);
+        if (id == null) {
+            id = typeNames.size();
+            typeIds.put(eventType, id);
+            typeNames.add(eventType);
+        }
+        return id;
+    }
+
+    private static final class OpenWindow {
+
+        private final long firstIndex;
+        private final KinesisClientRecord before;
+        private final BitSet types = new BitSet();
+
+        private OpenWindow(long firstIndex, KinesisClientRecord before) {
+            this.firstIndex = firstIndex;
+            this.before = before;
+        }
+    }
+}
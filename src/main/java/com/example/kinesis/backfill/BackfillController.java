@@ -0,0 +1,39 @@
+package com.example.kinesis.backfill;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes the per-shard progress of a backfill run.
+ */
+@RestController
+@RequestMapping("/backfill")
+public class BackfillController {
+
+    private final BackfillCoordinator coordinator;
+
+    public BackfillController(BackfillCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    @GetMapping
+    public Map<String, Object> progress() {
+        List<BackfillCoordinator.ShardProgress> shards = coordinator.shards().values().stream()
+                .sorted(Comparator.comparing(BackfillCoordinator.ShardProgress::getShardId))
+                .toList();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("enabled", coordinator.isEnabled());
+        response.put("applicationName", coordinator.properties().getApplicationName());
+        response.put("startTimestamp", coordinator.properties().getStartTimestamp());
+        response.put("stopTimestamp", coordinator.properties().getStopTimestamp());
+        response.put("finishedShards", coordinator.finishedShards());
+        response.put("shards", shards);
+        return response;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.kinesis.backfill;
+
+import com.example.kinesis.config.BackfillProperties;
+import com.example.kinesis.service.EventRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Shared state of a backfill run: the write rate limit, the stop targets and
+ * the progress of every shard this worker has backfilled.
+ */
+@Slf4j
+@Component
+public class BackfillCoordinator {
+
+    // A shard id, optionally qualified with its stream name as in multi-stream mode
+    private static final Pattern STOP_KEY = Pattern.compile("([a-zA-Z0-9_.-]+:)?shardId-[0-9]+");
+
+    private final BackfillProperties properties;
+    private final EventRouter eventRouter;
+    private final WriteRateLimiter rateLimiter;
+    private final Map<String, BigInteger> stopSequenceNumbers = new ConcurrentHashMap<>();
+    private final Map<String, ShardProgress> shards = new ConcurrentHashMap<>();
+    private final Counter written;
+    private final Counter failed;
+    private volatile long lastChangeMillis = System.currentTimeMillis();
+
+    public BackfillCoordinator(BackfillProperties properties, EventRouter eventRouter,
+                               @Value("${aws.kinesis.application-name}") String liveApplicationName,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.eventRouter = eventRouter;
+        this.rateLimiter = new WriteRateLimiter(properties.getMaxWritesPerSecond());
+        if (properties.isEnabled()) {
+            validate(liveApplicationName);
+        }
+        properties.getStopSequenceNumbers().forEach(
+                (shardId, sequenceNumber) -> stopSequenceNumbers.put(shardId, new BigInteger(sequenceNumber)));
+
+        this.written = Counter.builder("kinesis.backfill.records")
+                .description("Records written by the backfill")
+                .tag("outcome", "written")
+                .register(meterRegistry);
+        this.failed = Counter.builder("kinesis.backfill.records")
+                .description("Records written by the backfill")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        Gauge.builder("kinesis.backfill.shards.finished", this, BackfillCoordinator::finishedShards)
+                .description("Shards of this worker that reached the backfill stop target")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public BackfillProperties properties() {
+        return properties;
+    }
+
+    /**
+     * Blocks until {@code writes} more writes fit in the rate limit.
+     */
+    public void acquireWrites(int writes) {
+        long waitedNanos = rateLimiter.acquire(writes);
+        if (waitedNanos > 0) {
+            log.trace("Rate limit delayed {} backfill writes by {} ns", writes, waitedNanos);
+        }
+    }
+
+    /**
+     * Whether the live consumer writes events of this type as raw items;
+     * events of routes with {@code raw-writes: false} are skipped.
+     */
+    public boolean isRawWrite(String streamName, String eventType) {
+        return eventRouter.route(streamName, eventType).isRawWrites();
+    }
+
+    /**
+     * Whether the record is past the stop timestamp or the shard's stop sequence number.
+     */
+    public boolean isPastStop(String shardId, KinesisClientRecord record) {
+        Instant stopTimestamp = properties.getStopTimestamp();
+        if (stopTimestamp != null && record.approximateArrivalTimestamp() != null
+                && !record.approximateArrivalTimestamp().isBefore(stopTimestamp)) {
+            return true;
+        }
+        BigInteger stopSequenceNumber = stopSequenceNumbers.get(shardId);
+        return stopSequenceNumber != null
+                && new BigInteger(record.sequenceNumber()).compareTo(stopSequenceNumber) > 0;
+    }
+
+    public ShardProgress start(String shardId) {
+        ShardProgress shard = shards.computeIfAbsent(shardId, ShardProgress::new);
+        lastChangeMillis = System.currentTimeMillis();
+        return shard;
+    }
+
+    /**
+     * Marks the shard as having reached its stop target or its end.
+     */
+    public void finish(ShardProgress shard) {
+        shard.finished = true;
+        lastChangeMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Whether the backfill is done on this worker: every shard it started is
+     * finished, and no shard started or finished for
+     * {@code completion-quiet-millis}.
+     */
+    public boolean isComplete(long nowMillis) {
+        return !shards.isEmpty() && finishedShards() == shards.size()
+                && nowMillis - lastChangeMillis >= properties.getCompletionQuietMillis();
+    }
+
+    public void recordWritten(ShardProgress shard, int count) {
+        shard.written += count;
+        written.increment(count);
+    }
+
+    public void recordFailed(ShardProgress shard, int count) {
+        shard.failed += count;
+        failed.increment(count);
+    }
+
+    public Map<String, ShardProgress> shards() {
+        return shards;
+    }
+
+    public int finishedShards() {
+        int count = 0;
+        for (ShardProgress shard : shards.values()) {
+            if (shard.finished) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void validate(String liveApplicationName) {
+        if (properties.getApplicationName() == null || properties.getApplicationName().isBlank()) {
+            throw new IllegalStateException("backfill.application-name is required");
+        }
+        if (properties.getApplicationName().equals(liveApplicationName)) {
+            throw new IllegalStateException("backfill.application-name must differ from aws.kinesis.application-name,"
+                    + " or the backfill would take over the live consumer's leases");
+        }
+        if (properties.getStartTimestamp() == null) {
+            throw new IllegalStateException("backfill.start-timestamp is required");
+        }
+        if (properties.getStopTimestamp() != null
+                && !properties.getStopTimestamp().isAfter(properties.getStartTimestamp())) {
+            throw new IllegalStateException("backfill.stop-timestamp must be after backfill.start-timestamp");
+        }
+        for (String key : properties.getStopSequenceNumbers().keySet()) {
+            // Without brackets, relaxed binding drops the ':' of stream:shardId and the entry never matches
+            if (!STOP_KEY.matcher(key).matches()) {
+                throw new IllegalStateException("backfill.stop-sequence-numbers key '" + key
+                        + "' is not a shard id or stream:shardId; write it in brackets,"
+                        + " e.g. \"[orders:shardId-000000000000]\"");
+            }
+        }
+    }
+
+    /**
+     * Progress of one shard. Updated by the shard's processor thread only and
+     * read by the progress endpoint and gauges.
+     */
+    public static final class ShardProgress {
+
+        private final String shardId;
+        private final long startedAtMillis = System.currentTimeMillis();
+        private volatile long written;
+        private volatile long failed;
+        private volatile long skipped;
+        private volatile String lastSequenceNumber;
+        private volatile Instant lastArrivalTimestamp;
+        private volatile boolean finished;
+
+        private ShardProgress(String shardId) {
+            this.shardId = shardId;
+        }
+
+        public void recordPosition(KinesisClientRecord record) {
+            lastSequenceNumber = record.sequenceNumber();
+            lastArrivalTimestamp = record.approximateArrivalTimestamp();
+        }
+
+        public void recordSkipped(int count) {
+            skipped += count;
+        }
+
+        public String getShardId() {
+            return shardId;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public String getLastSequenceNumber() {
+            return lastSequenceNumber;
+        }
+
+        public Instant getLastArrivalTimestamp() {
+            return lastArrivalTimestamp;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public double getWritesPerSecond() {
+            long elapsed = Math.max(1L, System.currentTimeMillis() - startedAtMillis);
+            return written * 1000.0 / elapsed;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.kinesis.backfill;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Limits writes to a fixed rate shared by all callers. Each call reserves the
+ * next free slots and waits until the first of them, so the writes of one call
+ * go out together and the next call waits for their share of time. Callers
+ * acquire per write request (at most one BatchWriteItem) to keep the rate
+ * even. Unused time is not saved up, so there are no bursts after an idle
+ * period.
+ */
+public class WriteRateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos;
+
+    /**
+     * @param permitsPerSecond 0 or less for no limit
+     */
+    public WriteRateLimiter(int permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0L;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    public boolean isLimited() {
+        return intervalNanos > 0;
+    }
+
+    /**
+     * Blocks until the permits may be used.
+     *
+     * @return nanoseconds waited
+     */
+    public long acquire(int permits) {
+        if (intervalNanos == 0 || permits <= 0) {
+            return 0L;
+        }
+        long waitNanos = reserve(permits, System.nanoTime());
+        long deadline = System.nanoTime() + waitNanos;
+        for (long remaining = waitNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        return waitNanos;
+    }
+
+    /**
+     * @return how long the caller must wait before using the permits
+     */
+    synchronized long reserve(int permits, long nowNanos) {
+        if (nextFreeNanos - nowNanos < 0) {
+            nextFreeNanos = nowNanos;
+        }
+        long waitNanos = nextFreeNanos - nowNanos;
+        nextFreeNanos += permits * intervalNanos;
+        return waitNanos;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.kinesis.blob;
+
+public class BlobNotFoundException extends RuntimeException {
+
+    public BlobNotFoundException(String key) {
+        super("No blob stored under " + key);
+    }
+}
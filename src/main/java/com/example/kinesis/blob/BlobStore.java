@@ -0,0 +1,20 @@
+package com.example.kinesis.blob;
+
+/**
+ * Stores payloads that are too large to keep inline in a DynamoDB item.
+ * Writing the same key twice overwrites it, so retried writes are harmless.
+ */
+public interface BlobStore {
+
+    void put(String key, byte[] content);
+
+    /**
+     * @throws BlobNotFoundException if nothing is stored under the key
+     */
+    byte[] get(String key);
+
+    /**
+     * Removes the blob under the key. Deleting a missing key does nothing.
+     */
+    void delete(String key);
+}
@@ -0,0 +1,58 @@
+package com.example.kinesis.blob;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/**
+ * Blob store on S3 or an S3-compatible endpoint such as LocalStack.
+ */
+public class S3BlobStore implements BlobStore {
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String prefix;
+
+    public S3BlobStore(S3Client s3Client, String bucket, String prefix) {
+        if (bucket == null || bucket.isBlank()) {
+            throw new IllegalStateException("aws.dynamodb.offload.bucket is required for the S3 blob store");
+        }
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+    }
+
+    @Override
+    public void put(String key, byte[] content) {
+        s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(prefix + key)
+                        .contentType("application/json")
+                        .build(),
+                RequestBody.fromBytes(content));
+    }
+
+    @Override
+    public byte[] get(String key) {
+        try {
+            return s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(prefix + key)
+                    .build()).asByteArray();
+        } catch (NoSuchKeyException e) {
+            throw new BlobNotFoundException("s3://" + bucket + "/" + prefix + key);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        // S3 reports success for missing keys as well
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucket)
+                .key(prefix + key)
+                .build());
+    }
+}
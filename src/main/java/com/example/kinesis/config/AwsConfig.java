@@ -3,6 +3,7 @@ package com.example.kinesis.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
@@ -15,6 +16,8 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClientBuilder;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
 import software.amazon.awssdk.services.kinesis.KinesisAsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
 
 import java.net.URI;
 
@@ -32,7 +35,12 @@ public class AwsConfig {
         return Region.of(awsRegion);
     }
 
+    /**
+     * Only used for item writes, so it is created on first use rather than
+     * delaying the point where the scheduler starts taking leases.
+     */
     @Bean
+    @Lazy
     public DynamoDbClient dynamoDbClient(Region region) {
         DynamoDbClientBuilder builder = DynamoDbClient.builder()
                 .region(region);
@@ -49,6 +57,28 @@ public class AwsConfig {
         return builder.build();
     }
 
+    /**
+     * Only needed when large payloads are offloaded to S3.
+     */
+    @Bean
+    @Lazy
+    public S3Client s3Client(Region region) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(region);
+
+        if (awsEndpoint != null && !awsEndpoint.isEmpty()) {
+            // LocalStack configuration; path-style so the bucket is not resolved as a host name
+            builder.endpointOverride(URI.create(awsEndpoint))
+                   .forcePathStyle(true)
+                   .credentialsProvider(StaticCredentialsProvider.create(
+                       AwsBasicCredentials.create("test", "test")));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+
+        return builder.build();
+    }
+
     @Bean
     public DynamoDbAsyncClient dynamoDbAsyncClient(Region region) {
         DynamoDbAsyncClientBuilder builder = DynamoDbAsyncClient.builder()
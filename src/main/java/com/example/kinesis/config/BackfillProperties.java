@@ -0,0 +1,68 @@
+package com.example.kinesis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reprocesses the stream from a point in time without touching the live
+ * consumer: the backfill runs under its own application name, and so its own
+ * lease table, starting every shard at {@code start-timestamp}.
+ */
+@Data
+@ConfigurationProperties(prefix = "backfill")
+public class BackfillProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * KCL application name, and lease table, of the backfill. Must differ
+     * from {@code aws.kinesis.application-name}.
+     */
+    private String applicationName;
+
+    /**
+     * Every shard starts at the first record that arrived at or after this time.
+     */
+    private Instant startTimestamp;
+
+    /**
+     * Records that arrived at or after this time are not written; unset to
+     * backfill up to the tip.
+     */
+    private Instant stopTimestamp;
+
+    /**
+     * Last sequence number to write, per shard id ({@code stream:shardId} in
+     * multi-stream mode). Records after it are not written. Keys must be in
+     * brackets, e.g. {@code "[orders:shardId-000000000000]"}, or binding drops the
+     * {@code ':'}.
+     */
+    private Map<String, String> stopSequenceNumbers = new HashMap<>();
+
+    /**
+     * Writes per second across all shards of this worker; 0 for no limit.
+     */
+    private int maxWritesPerSecond = 1000;
+
+    /**
+     * How often each shard logs its progress.
+     */
+    private long progressLogIntervalMillis = 30000L;
+
+    /**
+     * Shut the application down once the backfill is complete on this worker.
+     * Otherwise the KCL keeps polling the finished shards up to the tip.
+     */
+    private boolean exitWhenFinished = true;
+
+    /**
+     * How long every shard of this worker must stay finished, with no shard
+     * started, before the backfill counts as complete. Covers child shards
+     * that are leased only after their parent ended.
+     */
+    private long completionQuietMillis = 60000L;
+}
@@ -0,0 +1,31 @@
+package com.example.kinesis.config;
+
+import software.amazon.kinesis.common.StreamConfig;
+import software.amazon.kinesis.processor.FormerStreamsLeasesDeletionStrategy;
+import software.amazon.kinesis.processor.MultiStreamTracker;
+
+import java.util.List;
+
+/**
+ * The fixed list of streams from {@link StreamsProperties}. Leases of streams
+ * removed from the configuration are kept, so re-adding a stream resumes
+ * from its checkpoints.
+ */
+class ConfiguredStreamTracker implements MultiStreamTracker {
+
+    private final List<StreamConfig> streamConfigs;
+
+    ConfiguredStreamTracker(List<StreamConfig> streamConfigs) {
+        this.streamConfigs = List.copyOf(streamConfigs);
+    }
+
+    @Override
+    public List<StreamConfig> streamConfigList() {
+        return streamConfigs;
+    }
+
+    @Override
+    public FormerStreamsLeasesDeletionStrategy formerStreamsLeasesDeletionStrategy() {
+        return new FormerStreamsLeasesDeletionStrategy.NoLeaseDeletionStrategy();
+    }
+}
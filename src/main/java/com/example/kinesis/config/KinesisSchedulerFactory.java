@@ -0,0 +1,174 @@
+package com.example.kinesis.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.awssdk.services.kinesis.model.StreamDescriptionSummary;
+import software.amazon.kinesis.common.ConfigsBuilder;
+import software.amazon.kinesis.common.InitialPositionInStreamExtended;
+import software.amazon.kinesis.common.StreamConfig;
+import software.amazon.kinesis.common.StreamIdentifier;
+import software.amazon.kinesis.coordinator.Scheduler;
+import software.amazon.kinesis.leases.LeaseManagementConfig;
+import software.amazon.kinesis.processor.ShardRecordProcessorFactory;
+import software.amazon.kinesis.processor.SingleStreamTracker;
+import software.amazon.kinesis.processor.StreamTracker;
+import software.amazon.kinesis.retrieval.polling.PollingConfig;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds the KCL {@link Scheduler} for a given worker id, applying the lease
+ * management settings from {@link LeaseProperties}. When
+ * {@link StreamsProperties} lists streams, the scheduler consumes all of them
+ * in KCL multi-stream mode with one lease table; otherwise it consumes
+ * {@code aws.kinesis.stream-name} alone. With {@link BackfillProperties}
+ * enabled, the scheduler runs under the backfill's application name and lease
+ * table and starts every shard at the backfill start timestamp.
+ */
+@Slf4j
+@Component
+public class KinesisSchedulerFactory {
+
+    private final ShardRecordProcessorFactory recordProcessorFactory;
+    private final KinesisAsyncClient kinesisAsyncClient;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final CloudWatchAsyncClient cloudWatchAsyncClient;
+    private final LeaseProperties leaseProperties;
+    private final StreamsProperties streamsProperties;
+    private final PollingProperties pollingProperties;
+    private final BackfillProperties backfillProperties;
+    private final String streamName;
+    private final String applicationName;
+
+    public KinesisSchedulerFactory(ShardRecordProcessorFactory recordProcessorFactory,
+                                   KinesisAsyncClient kinesisAsyncClient,
+                                   DynamoDbAsyncClient dynamoDbAsyncClient,
+                                   CloudWatchAsyncClient cloudWatchAsyncClient,
+                                   LeaseProperties leaseProperties,
+                                   StreamsProperties streamsProperties,
+                                   PollingProperties pollingProperties,
+                                   BackfillProperties backfillProperties,
+                                   @Value("${aws.kinesis.stream-name}") String streamName,
+                                   @Value("${aws.kinesis.application-name}") String applicationName) {
+        this.recordProcessorFactory = recordProcessorFactory;
+        this.kinesisAsyncClient = kinesisAsyncClient;
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.cloudWatchAsyncClient = cloudWatchAsyncClient;
+        this.leaseProperties = leaseProperties;
+        this.streamsProperties = streamsProperties;
+        this.pollingProperties = pollingProperties;
+        this.backfillProperties = backfillProperties;
+        this.streamName = streamName;
+        this.applicationName = applicationName;
+    }
+
+    public Scheduler create(String workerId) {
+        boolean multiStream = streamsProperties.isMultiStream();
+        String schedulerApplicationName = applicationName;
+        if (backfillProperties.isEnabled()) {
+            schedulerApplicationName = backfillProperties.getApplicationName();
+            log.info("Backfill mode: application {} from {} until {}", schedulerApplicationName,
+                    backfillProperties.getStartTimestamp(), backfillProperties.getStopTimestamp() == null
+                            ? "the tip" : backfillProperties.getStopTimestamp());
+        }
+        ConfigsBuilder configsBuilder = new ConfigsBuilder(
+                streamTracker(multiStream),
+                schedulerApplicationName,
+                kinesisAsyncClient,
+                dynamoDbAsyncClient,
+                cloudWatchAsyncClient,
+                workerId,
+                recordProcessorFactory
+        );
+
+        LeaseManagementConfig leaseManagementConfig = configsBuilder.leaseManagementConfig()
+                .failoverTimeMillis(leaseProperties.getFailoverTimeMillis())
+                .maxLeasesForWorker(leaseProperties.getMaxLeasesForWorker())
+                .maxLeasesToStealAtOneTime(leaseProperties.getMaxLeasesToStealAtOneTime())
+                .billingMode(leaseProperties.getBillingMode())
+                .initialLeaseTableReadCapacity(leaseProperties.getInitialLeaseTableReadCapacity())
+                .initialLeaseTableWriteCapacity(leaseProperties.getInitialLeaseTableWriteCapacity());
+
+        log.info("Worker {} lease settings: failover {} ms, max leases {}, steal {} at once, lease table billing {}",
+                workerId, leaseProperties.getFailoverTimeMillis(), leaseProperties.getMaxLeasesForWorker(),
+                leaseProperties.getMaxLeasesToStealAtOneTime(), leaseProperties.getBillingMode());
+
+        return new Scheduler(
+                configsBuilder.checkpointConfig(),
+                configsBuilder.coordinatorConfig(),
+                leaseManagementConfig,
+                configsBuilder.lifecycleConfig(),
+                configsBuilder.metricsConfig(),
+                // Empty polls reach the processors too, so idle shards still close windows and retry held records
+                configsBuilder.processorConfig().callProcessRecordsEvenForEmptyRecordList(true),
+                configsBuilder.retrievalConfig().retrievalSpecificConfig(pollingConfig(multiStream))
+        );
+    }
+
+    private StreamTracker streamTracker(boolean multiStream) {
+        if (multiStream) {
+            return new ConfiguredStreamTracker(streamConfigs());
+        }
+        if (backfillProperties.isEnabled()) {
+            return new SingleStreamTracker(streamName, backfillStartPosition());
+        }
+        return new SingleStreamTracker(streamName);
+    }
+
+    /**
+     * Only applies to shards without a lease yet, so a restarted backfill
+     * resumes from its own checkpoints.
+     */
+    private InitialPositionInStreamExtended backfillStartPosition() {
+        return InitialPositionInStreamExtended.newInitialPositionAtTimestamp(
+                Date.from(backfillProperties.getStartTimestamp()));
+    }
+
+    private PollingConfig pollingConfig(boolean multiStream) {
+        PollingConfig pollingConfig = multiStream
+                ? new PollingConfig(kinesisAsyncClient)
+                : new PollingConfig(streamName, kinesisAsyncClient);
+        log.info("Polling up to {} records per call, {} ms between calls",
+                pollingProperties.getMaxRecords(), pollingProperties.getIdleTimeBetweenReadsMillis());
+        return pollingConfig
+                .maxRecords(pollingProperties.getMaxRecords())
+                .idleTimeBetweenReadsInMillis(pollingProperties.getIdleTimeBetweenReadsMillis());
+    }
+
+    /**
+     * Multi-stream leases are keyed by account, stream name and creation time,
+     * so each configured stream is described once at startup.
+     */
+    private List<StreamConfig> streamConfigs() {
+        List<StreamConfig> configs = new ArrayList<>();
+        for (StreamsProperties.Stream stream : streamsProperties.getStreams()) {
+            if (stream.getName() == null || stream.getName().isBlank()) {
+                throw new IllegalStateException("aws.kinesis.streams[].name is required");
+            }
+            StreamDescriptionSummary summary = kinesisAsyncClient
+                    .describeStreamSummary(r -> r.streamName(stream.getName()))
+                    .join()
+                    .streamDescriptionSummary();
+            String account = summary.streamARN().split(":")[4];
+            StreamIdentifier identifier = StreamIdentifier.multiStreamInstance(
+                    account + ":" + stream.getName() + ":" + summary.streamCreationTimestamp().getEpochSecond());
+            if (backfillProperties.isEnabled()) {
+                configs.add(new StreamConfig(identifier, backfillStartPosition()));
+                log.info("Backfilling stream {} (account {}) from {}", stream.getName(), account,
+                        backfillProperties.getStartTimestamp());
+            } else {
+                configs.add(new StreamConfig(identifier,
+                        InitialPositionInStreamExtended.newInitialPosition(stream.getInitialPosition())));
+                log.info("Consuming stream {} (account {}) from {}", stream.getName(), account,
+                        stream.getInitialPosition());
+            }
+        }
+        return configs;
+    }
+}
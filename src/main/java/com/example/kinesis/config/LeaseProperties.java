@@ -0,0 +1,33 @@
+package com.example.kinesis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+
+/**
+ * KCL lease management settings. The defaults match the KCL defaults; lowering
+ * the failover time and stealing more than one lease at a time shortens the
+ * period shards go unconsumed after a worker disappears.
+ */
+@Data
+@ConfigurationProperties(prefix = "aws.kinesis.lease")
+public class LeaseProperties {
+
+    /**
+     * Time after which a lease that has not been renewed can be taken by another worker.
+     */
+    private long failoverTimeMillis = 10000L;
+
+    private int maxLeasesForWorker = Integer.MAX_VALUE;
+
+    private int maxLeasesToStealAtOneTime = 1;
+
+    private BillingMode billingMode = BillingMode.PAY_PER_REQUEST;
+
+    /**
+     * Only used when the lease table is created with PROVISIONED billing.
+     */
+    private int initialLeaseTableReadCapacity = 10;
+
+    private int initialLeaseTableWriteCapacity = 10;
+}
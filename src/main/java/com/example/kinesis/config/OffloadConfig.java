@@ -0,0 +1,35 @@
+package com.example.kinesis.config;
+
+import com.example.kinesis.blob.BlobStore;
+import com.example.kinesis.blob.FileBlobStore;
+import com.example.kinesis.blob.S3BlobStore;
+import com.example.kinesis.service.PayloadOffloader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.nio.file.Path;
+
+@Slf4j
+@Configuration
+public class OffloadConfig {
+
+    /**
+     * The S3 client is only created when the S3 store is selected.
+     */
+    @Bean
+    public PayloadOffloader payloadOffloader(OffloadProperties properties, ObjectProvider<S3Client> s3Client) {
+        if (!properties.isEnabled()) {
+            return PayloadOffloader.disabled();
+        }
+        BlobStore blobStore = switch (properties.getStore()) {
+            case S3 -> new S3BlobStore(s3Client.getObject(), properties.getBucket(), properties.getPrefix());
+            case FILE -> new FileBlobStore(Path.of(properties.getDirectory()));
+        };
+        log.info("Offloading payloads above {} bytes to the {} blob store",
+                properties.getThresholdBytes(), properties.getStore());
+        return new PayloadOffloader(blobStore, properties.getThresholdBytes());
+    }
+}
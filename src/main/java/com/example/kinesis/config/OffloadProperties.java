@@ -0,0 +1,43 @@
+package com.example.kinesis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Moves large event payloads out of DynamoDB items into a blob store. The
+ * item keeps a pointer and a checksum instead of the payload.
+ */
+@Data
+@ConfigurationProperties(prefix = "aws.dynamodb.offload")
+public class OffloadProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Payloads larger than this many UTF-8 bytes are offloaded. DynamoDB items
+     * are limited to 400 KB and writes are billed per KB.
+     */
+    private int thresholdBytes = 64 * 1024;
+
+    private Store store = Store.S3;
+
+    /**
+     * Bucket for {@code S3}; any S3-compatible endpoint set by {@code aws.endpoint} works.
+     */
+    private String bucket;
+
+    /**
+     * Key prefix inside the bucket.
+     */
+    private String prefix = "payloads/";
+
+    /**
+     * Root directory for {@code FILE}.
+     */
+    private String directory = "payloads";
+
+    public enum Store {
+        S3,
+        FILE
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.kinesis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * KCL polling settings. The defaults match the KCL defaults. The KCL fixes
+ * them when a shard consumer starts, so {@code max-records} should be sized
+ * for catching up: GetRecords returns what is available up to the limit, so a
+ * high limit costs nothing when the consumer is at the tip.
+ */
+@Data
+@ConfigurationProperties(prefix = "aws.kinesis.polling")
+public class PollingProperties {
+
+    /**
+     * Records per GetRecords call, at most 10000.
+     */
+    private int maxRecords = 10000;
+
+    /**
+     * Pause between GetRecords calls on a shard. Each shard allows five
+     * GetRecords calls per second, shared by every consumer of the stream.
+     */
+    private long idleTimeBetweenReadsMillis = 1000L;
+}
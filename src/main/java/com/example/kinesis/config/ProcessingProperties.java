@@ -0,0 +1,163 @@
+package com.example.kinesis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for how shard processors handle, retry and checkpoint records.
+ */
+@Data
+@ConfigurationProperties(prefix = "processing")
+public class ProcessingProperties {
+
+    private Retry retry = new Retry();
+
+    private HotKeys hotKeys = new HotKeys();
+
+    private Pipeline pipeline = new Pipeline();
+
+    private Aggregation aggregation = new Aggregation();
+
+    private CatchUp catchUp = new CatchUp();
+
+    /**
+     * What happens to records that still fail after all retries.
+     */
+    private FailureMode failureMode = FailureMode.SKIP;
+
+    public enum FailureMode {
+        /**
+         * Log the record and checkpoint past it.
+         */
+        SKIP,
+        /**
+         * Log the record and hold the checkpoint before it, so it is replayed
+         * when the lease moves or the worker restarts.
+         */
+        BLOCK
+    }
+
+    @Data
+    public static class Retry {
+
+        /**
+         * Retries of the failed subset of a batch, after the first attempt.
+         */
+        private int maxRetries = 3;
+
+        private long initialBackoffMillis = 100L;
+
+        private long maxBackoffMillis = 2000L;
+
+        private double multiplier = 2.0;
+    }
+
+    @Data
+    public static class HotKeys {
+
+        private boolean enabled = true;
+
+        /**
+         * Keys tracked per window bucket and dimension; memory is fixed at
+         * capacity * buckets counters per shard.
+         */
+        private int capacity = 64;
+
+        private long windowMillis = 60000L;
+
+        private int buckets = 6;
+
+        /**
+         * Share of the window's records above which an event id counts as hot.
+         */
+        private double hotShare = 0.05;
+
+        private long minHotCount = 100L;
+
+        /**
+         * Within a batch, write only the newest event for each hot item. Older
+         * events with the same id and timestamp would be overwritten anyway and
+         * are not written; events of the same id with another timestamp are.
+         */
+        private boolean coalesceWrites = false;
+    }
+
+    @Data
+    public static class Pipeline {
+
+        /**
+         * Run decode, parse and write as separate stages per shard instead of
+         * one after another on the KCL thread.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Slots in each ring buffer between stages; rounded up to a power of two.
+         * A full ring blocks the stage feeding it.
+         */
+        private int ringCapacity = 1024;
+
+        /**
+         * Most events handed to a single write by the write stage.
+         */
+        private int writeBatchSize = 100;
+
+        /**
+         * How long shutdown and shard end wait for queued records to be written.
+         */
+        private long drainTimeoutMillis = 10000L;
+    }
+
+    @Data
+    public static class Aggregation {
+
+        /**
+         * Count events of routes with {@code aggregate: true} in tumbling windows
+         * and write one rollup item per event type, window and shard.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Table with partition key {@code rollupKey} (S) and sort key {@code shardId} (S).
+         */
+        private String tableName = "event-rollups";
+
+        private long windowMillis = 60000L;
+
+        /**
+         * How far the newest arrival timestamp on the shard must be past a
+         * window's end before the window closes. At the tip, the window also
+         * closes once the clock is twice this far past its end. Records
+         * arriving for a closed window are not counted.
+         */
+        private long allowedLatenessMillis = 5000L;
+    }
+
+    @Data
+    public static class CatchUp {
+
+        /**
+         * Switch shards that fall behind to catch-up mode, which splits each
+         * batch into parallel writes. Shards at the tip write sequentially.
+         */
+        private boolean enabled = false;
+
+        /**
+         * millisBehindLatest at or above which a shard enters catch-up mode.
+         */
+        private long enterLagMillis = 60000L;
+
+        /**
+         * millisBehindLatest at or below which a shard returns to tail mode.
+         * Lower than enter-lag-millis so a shard near the boundary does not
+         * flip modes on every batch.
+         */
+        private long exitLagMillis = 10000L;
+
+        /**
+         * Parallel writes per batch in catch-up mode. The writer threads are
+         * shared by all shards of this worker.
+         */
+        private int writeConcurrency = 8;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.kinesis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps {@code eventType} values to target DynamoDB tables and batching policies.
+ * Event types without a route are written to {@code aws.dynamodb.table-name}.
+ */
+@Data
+@ConfigurationProperties(prefix = "aws.dynamodb.routing")
+public class RoutingProperties {
+
+    /**
+     * Batch size used for event types that fall through to the default table.
+     * A value of 1 writes each event with its own PutItem call.
+     */
+    private int defaultBatchSize = 1;
+
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Route {
+
+        private String name;
+
+        private List<String> eventTypes = new ArrayList<>();
+
+        private String tableName;
+
+        /**
+         * Maximum number of items per BatchWriteItem call (1-25).
+         */
+        private int batchSize = 1;
+
+        /**
+         * Count these event types in windowed rollups (needs processing.aggregation.enabled).
+         */
+        private boolean aggregate = false;
+
+        /**
+         * Write each raw event as well. Can only be turned off for aggregated routes.
+         */
+        private boolean rawWrites = true;
+    }
+}
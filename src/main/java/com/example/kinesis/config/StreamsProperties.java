@@ -0,0 +1,59 @@
+package com.example.kinesis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import software.amazon.kinesis.common.InitialPositionInStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams consumed by one scheduler in KCL multi-stream mode. When the list is
+ * empty, only {@code aws.kinesis.stream-name} is consumed, as before. Each
+ * stream can override the table, batch size, failure mode and retries; the
+ * pipeline, aggregation and catch-up settings apply to all streams.
+ */
+@Data
+@ConfigurationProperties(prefix = "aws.kinesis")
+public class StreamsProperties {
+
+    private List<Stream> streams = new ArrayList<>();
+
+    public boolean isMultiStream() {
+        return !streams.isEmpty();
+    }
+
+    @Data
+    public static class Stream {
+
+        private String name;
+
+        /**
+         * Table for event types of this stream that have no event-type route.
+         * Defaults to {@code aws.dynamodb.table-name}.
+         */
+        private String tableName;
+
+        /**
+         * Batch size for this stream's table (1-25).
+         */
+        private int batchSize = 1;
+
+        /**
+         * Where to start when the stream has no lease yet.
+         */
+        private InitialPositionInStream initialPosition = InitialPositionInStream.LATEST;
+
+        /**
+         * What happens to this stream's records that still fail after all
+         * retries. Defaults to {@code processing.failure-mode}.
+         */
+        private ProcessingProperties.FailureMode failureMode;
+
+        /**
+         * Retries of this stream's writes. Defaults to {@code processing.retry};
+         * fields left unset here take the built-in defaults, not that setting.
+         */
+        private ProcessingProperties.Retry retry;
+    }
+}
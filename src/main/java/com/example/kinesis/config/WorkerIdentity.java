@@ -0,0 +1,47 @@
+package com.example.kinesis.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * Resolves the KCL worker id. A stable id lets a restarted worker pick its own
+ * leases straight back up instead of waiting for them to expire and be stolen.
+ */
+@Slf4j
+public final class WorkerIdentity {
+
+    private WorkerIdentity() {
+    }
+
+    /**
+     * Uses the configured id if present, then the {@code HOSTNAME} environment
+     * variable (the pod name on Kubernetes), then the local host name. Falls
+     * back to a random id only when none of these are available.
+     */
+    public static String resolve(String configuredWorkerId) {
+        return resolve(configuredWorkerId, System.getenv("HOSTNAME"));
+    }
+
+    static String resolve(String configuredWorkerId, String hostnameEnv) {
+        if (configuredWorkerId != null && !configuredWorkerId.isBlank()) {
+            return configuredWorkerId.trim();
+        }
+        if (hostnameEnv != null && !hostnameEnv.isBlank()) {
+            return hostnameEnv.trim();
+        }
+        try {
+            String hostName = InetAddress.getLocalHost().getHostName();
+            if (hostName != null && !hostName.isBlank()) {
+                return hostName;
+            }
+        } catch (Exception e) {
+            log.warn("Could not determine local host name", e);
+        }
+        String randomId = UUID.randomUUID().toString();
+        log.warn("No stable worker id available, using random id {}. Leases will not be reclaimed after a restart",
+                randomId);
+        return randomId;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.kinesis.hotkey;
+
+import lombok.Value;
+
+/**
+ * A key and its approximate count within the current window. The true count
+ * lies between {@code count - maxError} and {@code count}.
+ */
+@Value
+public class HotKey {
+
+    String key;
+    long count;
+    long maxError;
+    double share;
+}
@@ -0,0 +1,50 @@
+package com.example.kinesis.hotkey;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes the current hot partition keys and event ids.
+ */
+@RestController
+@RequestMapping("/hot-keys")
+public class HotKeyController {
+
+    private final HotKeyRegistry hotKeyRegistry;
+
+    public HotKeyController(HotKeyRegistry hotKeyRegistry) {
+        this.hotKeyRegistry = hotKeyRegistry;
+    }
+
+    @GetMapping
+    public Map<String, Object> hotKeys(@RequestParam(defaultValue = "10") int limit) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("enabled", hotKeyRegistry.isEnabled());
+        response.put("shards", hotKeyRegistry.trackers().keySet());
+        response.put("partitionKeys", hotKeyRegistry.topPartitionKeys(limit));
+        response.put("eventIds", hotKeyRegistry.topEventIds(limit));
+        return response;
+    }
+
+    @GetMapping("/shards/{shardId}")
+    public ResponseEntity<Map<String, List<HotKey>>> shardHotKeys(@PathVariable String shardId,
+                                                                   @RequestParam(defaultValue = "10") int limit) {
+        HotKeyTracker tracker = hotKeyRegistry.trackers().get(shardId);
+        if (tracker == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long now = System.currentTimeMillis();
+        Map<String, List<HotKey>> response = new LinkedHashMap<>();
+        response.put("partitionKeys", tracker.partitionKeys().top(limit, now));
+        response.put("eventIds", tracker.eventIds().top(limit, now));
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.kinesis.hotkey;
+
+import com.example.kinesis.config.ProcessingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Holds the {@link HotKeyTracker} of every shard this worker owns and merges
+ * them for the metrics and the HTTP endpoint.
+ */
+@Component
+public class HotKeyRegistry {
+
+    private final ProcessingProperties.HotKeys settings;
+    private final Map<String, HotKeyTracker> trackers = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+
+    public HotKeyRegistry(ProcessingProperties processingProperties, MeterRegistry meterRegistry) {
+        this.settings = processingProperties.getHotKeys();
+        Gauge.builder("kinesis.consumer.hotkeys.top.share", this, r -> r.topShare(r.topPartitionKeys(1)))
+                .description("Share of records in the window carried by the hottest key")
+                .tag("dimension", "partitionKey")
+                .register(meterRegistry);
+        Gauge.builder("kinesis.consumer.hotkeys.top.share", this, r -> r.topShare(r.topEventIds(1)))
+                .description("Share of records in the window carried by the hottest key")
+                .tag("dimension", "eventId")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("kinesis.consumer.hotkeys.coalesced")
+                .description("Events of hot event ids not written because a newer event in the batch superseded them")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public boolean isCoalesceWrites() {
+        return settings.isEnabled() && settings.isCoalesceWrites();
+    }
+
+    public void recordCoalesced(int count) {
+        coalescedCounter.increment(count);
+    }
+
+    /**
+     * @return the tracker for the shard, or {@code null} when hot-key tracking is disabled
+     */
+    public HotKeyTracker register(String shardId) {
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        return trackers.computeIfAbsent(shardId, id -> new HotKeyTracker(settings));
+    }
+
+    public void unregister(String shardId) {
+        trackers.remove(shardId);
+    }
+
+    public Map<String, HotKeyTracker> trackers() {
+        return trackers;
+    }
+
+    public List<HotKey> topPartitionKeys(int limit) {
+        return merge(limit, HotKeyTracker::partitionKeys);
+    }
+
+    public List<HotKey> topEventIds(int limit) {
+        return merge(limit, HotKeyTracker::eventIds);
+    }
+
+    private List<HotKey> merge(int limit, Function<HotKeyTracker, WindowedTopK> dimension) {
+        long now = System.currentTimeMillis();
+        Map<String, long[]> merged = new HashMap<>();
+        long total = 0;
+        for (HotKeyTracker tracker : trackers.values()) {
+            WindowedTopK window = dimension.apply(tracker);
+            for (HotKey key : window.top(settings.getCapacity(), now)) {
+                long[] entry = merged.computeIfAbsent(key.getKey(), k -> new long[2]);
+                entry[0] += key.getCount();
+                entry[1] += key.getMaxError();
+            }
+            total += window.total(now);
+        }
+        List<HotKey> result = new ArrayList<>(merged.size());
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            long count = entry.getValue()[0];
+            result.add(new HotKey(entry.getKey(), count, entry.getValue()[1],
+                    total == 0 ? 0.0 : (double) count / total));
+        }
+        result.sort(Comparator.comparingLong(HotKey::getCount).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private double topShare(List<HotKey> top) {
+        return top.isEmpty() ? 0.0 : top.get(0).getShare();
+    }
+}
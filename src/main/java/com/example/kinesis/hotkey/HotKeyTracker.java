@@ -0,0 +1,57 @@
+package com.example.kinesis.hotkey;
+
+import com.example.kinesis.config.ProcessingProperties;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hot-key statistics for one shard: partition keys and event ids, each over
+ * the same sliding window.
+ */
+public class HotKeyTracker {
+
+    private final WindowedTopK partitionKeys;
+    private final WindowedTopK eventIds;
+    private final int capacity;
+    private final double hotShare;
+    private final long minHotCount;
+
+    public HotKeyTracker(ProcessingProperties.HotKeys settings) {
+        this.capacity = settings.getCapacity();
+        this.partitionKeys = new WindowedTopK(capacity, settings.getWindowMillis(), settings.getBuckets());
+        this.eventIds = new WindowedTopK(capacity, settings.getWindowMillis(), settings.getBuckets());
+        this.hotShare = settings.getHotShare();
+        this.minHotCount = settings.getMinHotCount();
+    }
+
+    public void record(String partitionKey, String eventId, long nowMillis) {
+        partitionKeys.offer(partitionKey, nowMillis);
+        eventIds.offer(eventId, nowMillis);
+    }
+
+    public WindowedTopK partitionKeys() {
+        return partitionKeys;
+    }
+
+    public WindowedTopK eventIds() {
+        return eventIds;
+    }
+
+    /**
+     * Event ids that currently exceed both the configured share of the window
+     * and the minimum count.
+     */
+    public Set<String> hotEventIds(long nowMillis) {
+        Set<String> hot = new HashSet<>();
+        for (HotKey key : eventIds.top(capacity, nowMillis)) {
+            if (key.getShare() < hotShare) {
+                break;
+            }
+            if (key.getCount() >= minHotCount) {
+                hot.add(key.getKey());
+            }
+        }
+        return hot;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.kinesis.hotkey;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving top-K counter (Metwally et al.). Tracks at most {@code capacity}
+ * keys; when a new key arrives and the table is full it replaces the key with
+ * the lowest count and inherits that count as its error bound. Counters are
+ * kept in a min-heap, so every update is O(log capacity) and memory is fixed.
+ * Not thread-safe.
+ */
+class SpaceSavingSketch {
+
+    private final int capacity;
+    private final String[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    // heap[i] is a slot index; positions[slot] is that slot's index in the heap
+    private final int[] heap;
+    private final int[] positions;
+    private final Map<String, Integer> slots;
+    private int size;
+    private long total;
+
+    SpaceSavingSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+    void offer(String key) {
+        total++;
+        Integer existing = slots.get(key);
+        if (existing != null) {
+            counts[existing]++;
+            siftDown(positions[existing]);
+            return;
+        }
+
+        int slot;
+        if (size < capacity) {
+            slot = size;
+            heap[size] = slot;
+            positions[slot] = size;
+            size++;
+            counts[slot] = 1;
+            errors[slot] = 0;
+            keys[slot] = key;
+            slots.put(key, slot);
+            siftUp(positions[slot]);
+        } else {
+            slot = heap[0];
+            slots.remove(keys[slot]);
+            errors[slot] = counts[slot];
+            counts[slot]++;
+            keys[slot] = key;
+            slots.put(key, slot);
+            siftDown(0);
+        }
+    }
+
+    long total() {
+        return total;
+    }
+
+    /**
+     * Adds this sketch's counts and error bounds to {@code into}, keyed by key.
+     */
+    void mergeInto(Map<String, long[]> into) {
+        for (int slot = 0; slot < size; slot++) {
+            long[] entry = into.computeIfAbsent(keys[slot], k -> new long[2]);
+            entry[0] += counts[slot];
+            entry[1] += errors[slot];
+        }
+    }
+
+    void clear() {
+        for (int slot = 0; slot < size; slot++) {
+            keys[slot] = null;
+        }
+        slots.clear();
+        size = 0;
+        total = 0;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[heap[index]]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int right = left + 1;
+            int smallest = right < size && counts[heap[right]] < counts[heap[left]] ? right : left;
+            if (counts[heap[index]] <= counts[heap[smallest]]) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int slotI = heap[i];
+        int slotJ = heap[j];
+        heap[i] = slotJ;
+        heap[j] = slotI;
+        positions[slotJ] = i;
+        positions[slotI] = j;
+    }
+}
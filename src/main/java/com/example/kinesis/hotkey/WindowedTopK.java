@@ -0,0 +1,85 @@
+package com.example.kinesis.hotkey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate top-K over a sliding time window. The window is split into a
+ * ring of buckets, each with its own {@link SpaceSavingSketch}; the oldest
+ * bucket is cleared as time moves on, so memory stays at
+ * {@code buckets * capacity} counters regardless of key cardinality.
+ */
+public class WindowedTopK {
+
+    private final SpaceSavingSketch[] buckets;
+    private final long bucketMillis;
+    private int current;
+    private long currentBucketStart;
+
+    public WindowedTopK(int capacity, long windowMillis, int bucketCount) {
+        if (bucketCount < 1 || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("Window of " + windowMillis + " ms cannot be split into "
+                    + bucketCount + " buckets");
+        }
+        this.buckets = new SpaceSavingSketch[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new SpaceSavingSketch(capacity);
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+    }
+
+    public synchronized void offer(String key, long nowMillis) {
+        if (key == null) {
+            return;
+        }
+        rotate(nowMillis);
+        buckets[current].offer(key);
+    }
+
+    public synchronized long total(long nowMillis) {
+        rotate(nowMillis);
+        long total = 0;
+        for (SpaceSavingSketch bucket : buckets) {
+            total += bucket.total();
+        }
+        return total;
+    }
+
+    /**
+     * @return up to {@code limit} keys ordered by descending count
+     */
+    public synchronized List<HotKey> top(int limit, long nowMillis) {
+        rotate(nowMillis);
+        Map<String, long[]> merged = new HashMap<>();
+        long total = 0;
+        for (SpaceSavingSketch bucket : buckets) {
+            bucket.mergeInto(merged);
+            total += bucket.total();
+        }
+        List<HotKey> result = new ArrayList<>(merged.size());
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            long count = entry.getValue()[0];
+            result.add(new HotKey(entry.getKey(), count, entry.getValue()[1],
+                    total == 0 ? 0.0 : (double) count / total));
+        }
+        result.sort(Comparator.comparingLong(HotKey::getCount).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private void rotate(long nowMillis) {
+        long bucketStart = nowMillis - nowMillis % bucketMillis;
+        if (bucketStart <= currentBucketStart) {
+            // Same bucket, or the clock went backwards: keep counting in the current one
+            return;
+        }
+        long steps = Math.min(buckets.length, (bucketStart - currentBucketStart) / bucketMillis);
+        for (long i = 0; i < steps; i++) {
+            current = (current + 1) % buckets.length;
+            buckets[current].clear();
+        }
+        currentBucketStart = bucketStart;
+    }
+}
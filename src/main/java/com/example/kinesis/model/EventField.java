@@ -0,0 +1,46 @@
+package com.example.kinesis.model;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.function.Function;
+
+/**
+ * The non-key attributes of an {@link EventRecord} that a partial update can
+ * set or remove.
+ */
+public enum EventField {
+
+    EVENT_TYPE(EventRecordSchema.EVENT_TYPE, event -> string(event.getEventType())),
+    DATA(EventRecordSchema.DATA, event -> string(event.getData())),
+    STATUS(EventRecordSchema.STATUS, event -> string(event.getStatus())),
+    UPDATED_AT(EventRecordSchema.UPDATED_AT, event -> number(event.getUpdatedAt())),
+    DATA_REF(EventRecordSchema.DATA_REF, event -> string(event.getDataRef())),
+    DATA_CHECKSUM(EventRecordSchema.DATA_CHECKSUM, event -> string(event.getDataChecksum()));
+
+    private final String attributeName;
+    private final Function<EventRecord, AttributeValue> extractor;
+
+    EventField(String attributeName, Function<EventRecord, AttributeValue> extractor) {
+        this.attributeName = attributeName;
+        this.extractor = extractor;
+    }
+
+    public String attributeName() {
+        return attributeName;
+    }
+
+    /**
+     * The field's value in {@code event}, or null if it is not set.
+     */
+    public AttributeValue value(EventRecord event) {
+        return extractor.apply(event);
+    }
+
+    private static AttributeValue string(String value) {
+        return value == null ? null : AttributeValue.fromS(value);
+    }
+
+    private static AttributeValue number(Long value) {
+        return value == null ? null : AttributeValue.fromN(Long.toString(value));
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.kinesis.model;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,12 +21,30 @@ import java.time.Instant;
 @DynamoDbBean
 public class EventRecord {
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     private String id;
     private String eventType;
     private String data;
     private Long timestamp;
     private String status;
 
+    /**
+     * Version of the last partial update, compared by conditional updates so
+     * an older update cannot overwrite a newer one.
+     */
+    private Long updatedAt;
+
+    /**
+     * Blob store key of the payload when it was too large to keep in {@code data}.
+     */
+    private String dataRef;
+
+    /**
+     * Base64 SHA-256 of the offloaded payload.
+     */
+    private String dataChecksum;
+
     @DynamoDbPartitionKey
     public String getId() {
         return id;
@@ -35,31 +55,77 @@ public class EventRecord {
         return timestamp;
     }
 
+    /**
+     * Builds a record from the raw JSON payload. Only the top-level {@code id}
+     * and {@code eventType} fields are read, with a streaming parser, so no
+     * tree is built for the rest of the document.
+     */
     public static EventRecord fromJson(String json) {
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            JsonNode node = mapper.readTree(json);
-            
-            // Extract fields from JSON if they exist, otherwise use defaults
-            String id = node.has("id") ? node.get("id").asText() : java.util.UUID.randomUUID().toString();
-            String eventType = node.has("eventType") ? node.get("eventType").asText() : "KINESIS_EVENT";
-            
-            return EventRecord.builder()
-                    .id(id)
-                    .eventType(eventType)
-                    .data(json)
-                    .timestamp(Instant.now().toEpochMilli())
-                    .status("PROCESSED")
-                    .build();
+        return fromJson(json, null, Instant.now().toEpochMilli());
+    }
+
+    /**
+     * Builds a record whose key does not depend on when it is processed, so
+     * processing the same payload again overwrites the item instead of adding
+     * one.
+     *
+     * @param fallbackId id when the payload has none, or null for a random id
+     * @param timestamp  sort key of the item
+     */
+    public static EventRecord fromJson(String json, String fallbackId, long timestamp) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            String id = null;
+            String eventType = null;
+
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    String text;
+                    if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        text = "";
+                    } else {
+                        text = parser.getText();
+                    }
+                    if ("id".equals(field)) {
+                        id = text;
+                    } else if ("eventType".equals(field)) {
+                        eventType = text;
+                    }
+                }
+                if (token != JsonToken.END_OBJECT) {
+                    throw new JsonParseException(parser, "Unterminated JSON object");
+                }
+            }
+
+            // Use the extracted fields if they exist, otherwise use defaults
+            return new EventRecord(
+                    id != null ? id : defaultId(fallbackId),
+                    eventType != null ? eventType : "KINESIS_EVENT",
+                    json,
+                    timestamp,
+                    "PROCESSED",
+                    null,
+                    null,
+                    null);
         } catch (Exception e) {
             // If JSON parsing fails, create a basic record
-            return EventRecord.builder()
-                    .id(java.util.UUID.randomUUID().toString())
-                    .eventType("KINESIS_EVENT")
-                    .data(json)
-                    .timestamp(Instant.now().toEpochMilli())
-                    .status("PROCESSED")
-                    .build();
+            return new EventRecord(
+                    defaultId(fallbackId),
+                    "KINESIS_EVENT",
+                    json,
+                    timestamp,
+                    "PROCESSED",
+                    null,
+                    null,
+                    null);
         }
     }
+
+    // Called only when the payload has no usable id, since randomUUID draws from SecureRandom
+    private static String defaultId(String fallbackId) {
+        return fallbackId != null ? fallbackId : java.util.UUID.randomUUID().toString();
+    }
 }
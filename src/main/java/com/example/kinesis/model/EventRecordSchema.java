@@ -0,0 +1,127 @@
+package com.example.kinesis.model;
+
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DynamoDB mapping for {@link EventRecord}.
+ *
+ * <p>{@link #TABLE_SCHEMA} is declared with plain getter/setter references, so
+ * unlike {@code TableSchema.fromBean} it needs no bean introspection or
+ * lambda metafactory bootstrapping. {@link #toItem} is the write hot path: it
+ * builds a new, presized attribute map per record without going through the
+ * schema; only the default status and event type values are shared.
+ */
+public final class EventRecordSchema {
+
+    public static final String ID = "id";
+    public static final String EVENT_TYPE = "eventType";
+    public static final String DATA = "data";
+    public static final String TIMESTAMP = "timestamp";
+    public static final String STATUS = "status";
+    public static final String UPDATED_AT = "updatedAt";
+    public static final String DATA_REF = "dataRef";
+    public static final String DATA_CHECKSUM = "dataChecksum";
+
+    public static final TableSchema<EventRecord> TABLE_SCHEMA = StaticTableSchema.builder(EventRecord.class)
+            .newItemSupplier(EventRecord::new)
+            .addAttribute(String.class, a -> a.name(ID)
+                    .getter(EventRecord::getId)
+                    .setter(EventRecord::setId)
+                    .tags(StaticAttributeTags.primaryPartitionKey()))
+            .addAttribute(Long.class, a -> a.name(TIMESTAMP)
+                    .getter(EventRecord::getTimestamp)
+                    .setter(EventRecord::setTimestamp)
+                    .tags(StaticAttributeTags.primarySortKey()))
+            .addAttribute(String.class, a -> a.name(EVENT_TYPE)
+                    .getter(EventRecord::getEventType)
+                    .setter(EventRecord::setEventType))
+            .addAttribute(String.class, a -> a.name(DATA)
+                    .getter(EventRecord::getData)
+                    .setter(EventRecord::setData))
+            .addAttribute(String.class, a -> a.name(STATUS)
+                    .getter(EventRecord::getStatus)
+                    .setter(EventRecord::setStatus))
+            .addAttribute(Long.class, a -> a.name(UPDATED_AT)
+                    .getter(EventRecord::getUpdatedAt)
+                    .setter(EventRecord::setUpdatedAt))
+            .addAttribute(String.class, a -> a.name(DATA_REF)
+                    .getter(EventRecord::getDataRef)
+                    .setter(EventRecord::setDataRef))
+            .addAttribute(String.class, a -> a.name(DATA_CHECKSUM)
+                    .getter(EventRecord::getDataChecksum)
+                    .setter(EventRecord::setDataChecksum))
+            .build();
+
+    // Holds the six attributes of an inline item without rehashing at the default load factor
+    private static final int ITEM_MAP_CAPACITY = 8;
+
+    private static final AttributeValue STATUS_PROCESSED = AttributeValue.fromS("PROCESSED");
+    private static final AttributeValue EVENT_TYPE_DEFAULT = AttributeValue.fromS("KINESIS_EVENT");
+
+    private EventRecordSchema() {
+    }
+
+    /**
+     * Converts a record to a PutItem attribute map. Null attributes are left
+     * out, as the enhanced client does when ignoring nulls.
+     */
+    public static Map<String, AttributeValue> toItem(EventRecord event) {
+        Map<String, AttributeValue> item = new HashMap<>(ITEM_MAP_CAPACITY);
+        if (event.getId() != null) {
+            item.put(ID, AttributeValue.fromS(event.getId()));
+        }
+        if (event.getTimestamp() != null) {
+            item.put(TIMESTAMP, AttributeValue.fromN(Long.toString(event.getTimestamp())));
+        }
+        if (event.getEventType() != null) {
+            item.put(EVENT_TYPE, "KINESIS_EVENT".equals(event.getEventType())
+                    ? EVENT_TYPE_DEFAULT : AttributeValue.fromS(event.getEventType()));
+        }
+        if (event.getData() != null) {
+            item.put(DATA, AttributeValue.fromS(event.getData()));
+        }
+        if (event.getStatus() != null) {
+            item.put(STATUS, "PROCESSED".equals(event.getStatus())
+                    ? STATUS_PROCESSED : AttributeValue.fromS(event.getStatus()));
+        }
+        if (event.getUpdatedAt() != null) {
+            item.put(UPDATED_AT, AttributeValue.fromN(Long.toString(event.getUpdatedAt())));
+        }
+        if (event.getDataRef() != null) {
+            item.put(DATA_REF, AttributeValue.fromS(event.getDataRef()));
+        }
+        if (event.getDataChecksum() != null) {
+            item.put(DATA_CHECKSUM, AttributeValue.fromS(event.getDataChecksum()));
+        }
+        return item;
+    }
+
+    /**
+     * The primary key attributes of a record, for UpdateItem and GetItem.
+     */
+    public static Map<String, AttributeValue> key(EventRecord event) {
+        return Map.of(
+                ID, AttributeValue.fromS(event.getId()),
+                TIMESTAMP, AttributeValue.fromN(Long.toString(event.getTimestamp())));
+    }
+
+    /**
+     * Identifies an item by its primary key, e.g. to match unprocessed batch
+     * writes back to the records they came from.
+     */
+    public static String itemKey(Map<String, AttributeValue> item) {
+        AttributeValue id = item.get(ID);
+        AttributeValue timestamp = item.get(TIMESTAMP);
+        return (id == null ? null : id.s()) + '\u0000' + (timestamp == null ? null : timestamp.n());
+    }
+
+    public static String itemKey(EventRecord event) {
+        return event.getId() + '\u0000' + event.getTimestamp();
+    }
+}
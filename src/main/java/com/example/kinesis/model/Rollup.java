@@ -0,0 +1,52 @@
+package com.example.kinesis.model;
+
+import lombok.Builder;
+import lombok.Value;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregate of one event type in one tumbling window, as seen by one shard.
+ * Rollup items are keyed by {@code eventType#windowStart} and sorted by shard,
+ * so each shard owns its own item and readers sum over the partition.
+ */
+@Value
+@Builder
+public class Rollup {
+
+    public static final String ROLLUP_KEY = "rollupKey";
+    public static final String SHARD_ID = "shardId";
+    public static final String EVENT_TYPE = "eventType";
+    public static final String WINDOW_START = "windowStart";
+    public static final String WINDOW_END = "windowEnd";
+    public static final String COUNT = "count";
+    public static final String BYTES = "bytes";
+    public static final String UPDATED_AT = "updatedAt";
+
+    String shardId;
+    String eventType;
+    long windowStart;
+    long windowEnd;
+    long count;
+    long bytes;
+    long updatedAt;
+
+    public String getRollupKey() {
+        return eventType + "#" + windowStart;
+    }
+
+    public Map<String, AttributeValue> toItem() {
+        Map<String, AttributeValue> item = new HashMap<>(16);
+        item.put(ROLLUP_KEY, AttributeValue.fromS(getRollupKey()));
+        item.put(SHARD_ID, AttributeValue.fromS(shardId));
+        item.put(EVENT_TYPE, AttributeValue.fromS(eventType));
+        item.put(WINDOW_START, AttributeValue.fromN(Long.toString(windowStart)));
+        item.put(WINDOW_END, AttributeValue.fromN(Long.toString(windowEnd)));
+        item.put(COUNT, AttributeValue.fromN(Long.toString(count)));
+        item.put(BYTES, AttributeValue.fromN(Long.toString(bytes)));
+        item.put(UPDATED_AT, AttributeValue.fromN(Long.toString(updatedAt)));
+        return item;
+    }
+}
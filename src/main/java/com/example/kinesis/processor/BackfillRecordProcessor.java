@@ -0,0 +1,209 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.backfill.BackfillCoordinator;
+import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.service.DynamoDbService;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.kinesis.lifecycle.events.*;
+import software.amazon.kinesis.processor.RecordProcessorCheckpointer;
+import software.amazon.kinesis.processor.ShardRecordProcessor;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shard processor of a backfill run. Records are written in rate-limited
+ * chunks of one BatchWriteItem until the shard reaches the stop target; later
+ * records are not written and the shard is reported finished. Checkpoints go
+ * to the backfill's own lease table, so a restarted backfill resumes where it
+ * stopped.
+ *
+ * <p>A record the failure handler refuses stops the shard's backfill at that
+ * record: nothing after it is written or checkpointed until the backfill is
+ * restarted.
+ */
+@Slf4j
+public class BackfillRecordProcessor implements ShardRecordProcessor {
+
+    /**
+     * Events written per rate-limited write: one full BatchWriteItem.
+     */
+    private static final int WRITE_CHUNK = 25;
+
+    private final RetryingWriter writer;
+    private final FailureHandler failureHandler;
+    private final BackfillCoordinator coordinator;
+    private final String streamName;
+
+    private String shardId;
+    private BackfillCoordinator.ShardProgress progress;
+    private KinesisClientRecord heldAt;
+    private long lastProgressLogMillis;
+
+    /**
+     * @param streamName source stream in multi-stream mode, or null
+     */
+    public BackfillRecordProcessor(DynamoDbService dynamoDbService, RetryPolicy retryPolicy,
+                                   FailureHandler failureHandler, BackfillCoordinator coordinator,
+                                   String streamName) {
+        this.writer = new RetryingWriter(dynamoDbService, retryPolicy, streamName);
+        this.failureHandler = failureHandler;
+        this.coordinator = coordinator;
+        this.streamName = streamName;
+    }
+
+    @Override
+    public void initialize(InitializationInput initializationInput) {
+        shardId = streamName == null
+                ? initializationInput.shardId() : streamName + ":" + initializationInput.shardId();
+        progress = coordinator.start(shardId);
+        lastProgressLogMillis = System.currentTimeMillis();
+        log.info("Initializing backfill of shard: {} from {}", shardId,
+                initializationInput.extendedSequenceNumber() == null
+                        ? coordinator.properties().getStartTimestamp() : initializationInput.extendedSequenceNumber());
+    }
+
+    @Override
+    public void processRecords(ProcessRecordsInput processRecordsInput) {
+        if (progress.isFinished() || heldAt != null) {
+            return;
+        }
+        List<KinesisClientRecord> records = processRecordsInput.records();
+
+        // Only the records before the stop target are written
+        int end = 0;
+        while (end < records.size() && !coordinator.isPastStop(shardId, records.get(end))) {
+            end++;
+        }
+        boolean reachedStop = end < records.size();
+
+        boolean[] done = new boolean[end];
+        List<EventRecord> events = new ArrayList<>(end);
+        Map<EventRecord, Integer> positions = new IdentityHashMap<>(end);
+        int skipped = 0;
+        for (int i = 0; i < end; i++) {
+            KinesisClientRecord record = records.get(i);
+            try {
+                EventRecord event = toEvent(record);
+                if (coordinator.isRawWrite(streamName, event.getEventType())) {
+                    events.add(event);
+                    positions.put(event, i);
+                } else {
+                    done[i] = true;
+                    skipped++;
+                }
+            } catch (Exception e) {
+                log.error("Error processing record: {}", record.sequenceNumber(), e);
+                done[i] = failureHandler.handle(shardId, record, null, e);
+            }
+        }
+        progress.recordSkipped(skipped);
+
+        // The rate limit is taken per BatchWriteItem, so a large batch is spread out instead of sent at once
+        Set<EventRecord> failedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        Exception error = null;
+        for (int from = 0; from < events.size(); from += WRITE_CHUNK) {
+            List<EventRecord> chunk = events.subList(from, Math.min(from + WRITE_CHUNK, events.size()));
+            coordinator.acquireWrites(chunk.size());
+            RetryingWriter.Result result = writer.write(shardId, chunk);
+            failedSet.addAll(result.getFailed());
+            if (result.getError() != null) {
+                error = result.getError();
+            }
+        }
+        for (EventRecord event : events) {
+            int position = positions.get(event);
+            done[position] = !failedSet.contains(event)
+                    || failureHandler.handle(shardId, records.get(position), event, error);
+        }
+        coordinator.recordWritten(progress, events.size() - failedSet.size());
+        coordinator.recordFailed(progress, failedSet.size());
+
+        int contiguous = 0;
+        while (contiguous < end && done[contiguous]) {
+            contiguous++;
+        }
+        if (contiguous > 0) {
+            KinesisClientRecord last = records.get(contiguous - 1);
+            progress.recordPosition(last);
+            checkpoint(processRecordsInput.checkpointer(), last);
+        }
+        if (contiguous < end) {
+            heldAt = records.get(contiguous);
+            log.error("Backfill of shard: {} stopped before failed record {} - restart the backfill to retry it",
+                    shardId, heldAt.sequenceNumber());
+        } else if (reachedStop) {
+            coordinator.finish(progress);
+            log.info("Backfill of shard: {} reached its stop target - {} records written, last sequence number {}",
+                    shardId, progress.getWritten(), progress.getLastSequenceNumber());
+        }
+        logProgress();
+    }
+
+    @Override
+    public void leaseLost(LeaseLostInput leaseLostInput) {
+        log.warn("Lease lost for backfill of shard: {}", shardId);
+    }
+
+    @Override
+    public void shardEnded(ShardEndedInput shardEndedInput) {
+        if (heldAt != null) {
+            log.error("Not checkpointing end of shard: {} - backfill stopped before sequence number {}",
+                    shardId, heldAt.sequenceNumber());
+            return;
+        }
+        coordinator.finish(progress);
+        log.info("Backfill of shard: {} complete at shard end - {} records written", shardId, progress.getWritten());
+        try {
+            shardEndedInput.checkpointer().checkpoint();
+        } catch (Exception e) {
+            log.error("Error checkpointing at shard end: {}", shardId, e);
+        }
+    }
+
+    @Override
+    public void shutdownRequested(ShutdownRequestedInput shutdownRequestedInput) {
+        // Every batch is checkpointed once written, so there is nothing to drain
+        log.info("Shutdown requested for backfill of shard: {} at sequence number {}",
+                shardId, progress.getLastSequenceNumber());
+    }
+
+    /**
+     * Keys the item by the record's arrival time instead of the processing
+     * time, and by its sequence number when the payload has no id, so running
+     * the backfill again overwrites the items of the previous run.
+     */
+    private EventRecord toEvent(KinesisClientRecord record) {
+        Instant arrival = record.approximateArrivalTimestamp();
+        return EventRecord.fromJson(StandardCharsets.UTF_8.decode(record.data()).toString(),
+                shardId + ":" + record.sequenceNumber(),
+                arrival != null ? arrival.toEpochMilli() : System.currentTimeMillis());
+    }
+
+    private void checkpoint(RecordProcessorCheckpointer checkpointer, KinesisClientRecord record) {
+        try {
+            checkpointer.checkpoint(record.sequenceNumber(), record.subSequenceNumber());
+        } catch (Exception e) {
+            log.error("Error checkpointing backfill of shard: {}", shardId, e);
+        }
+    }
+
+    private void logProgress() {
+        long now = System.currentTimeMillis();
+        if (now - lastProgressLogMillis < coordinator.properties().getProgressLogIntervalMillis()) {
+            return;
+        }
+        lastProgressLogMillis = now;
+        log.info("Backfill of shard: {} - {} written, {} failed, {} skipped, {} writes/s, at {} (sequence number {})",
+                shardId, progress.getWritten(), progress.getFailed(), progress.getSkipped(),
+                String.format("%.0f", progress.getWritesPerSecond()), progress.getLastArrivalTimestamp(),
+                progress.getLastSequenceNumber());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.config.ProcessingProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Puts each shard in tail or catch-up mode from the {@code millisBehindLatest}
+ * the KCL reports with every batch. A shard enters catch-up mode at
+ * {@code enter-lag-millis} and leaves it at {@code exit-lag-millis}. In
+ * catch-up mode a batch is split into parallel writes on a pool shared by all
+ * shards. In tail mode a batch is written on the KCL thread with no hand-off.
+ */
+@Slf4j
+@Component
+public class CatchUpController {
+
+    public enum Mode {
+        TAIL,
+        CATCH_UP
+    }
+
+    private final ProcessingProperties.CatchUp settings;
+    private final Map<String, ShardLag> shards = new ConcurrentHashMap<>();
+    private final ExecutorService writeExecutor;
+
+    public CatchUpController(ProcessingProperties processingProperties, MeterRegistry meterRegistry) {
+        this.settings = processingProperties.getCatchUp();
+        if (settings.isEnabled() && settings.getExitLagMillis() > settings.getEnterLagMillis()) {
+            throw new IllegalStateException("processing.catch-up.exit-lag-millis must not exceed enter-lag-millis");
+        }
+        if (settings.isEnabled() && settings.getWriteConcurrency() < 1) {
+            throw new IllegalStateException("processing.catch-up.write-concurrency must be at least 1");
+        }
+        this.writeExecutor = settings.isEnabled() && settings.getWriteConcurrency() > 1
+                ? Executors.newFixedThreadPool(settings.getWriteConcurrency() - 1, writerThreads())
+                : null;
+
+        Gauge.builder("kinesis.consumer.mode", this, c -> c.mode() == Mode.CATCH_UP ? 1 : 0)
+                .description("1 while any shard of this worker is in catch-up mode, 0 in tail mode")
+                .register(meterRegistry);
+        Gauge.builder("kinesis.consumer.catchup.shards", this, CatchUpController::catchUpShards)
+                .description("Shards of this worker in catch-up mode")
+                .register(meterRegistry);
+        Gauge.builder("kinesis.consumer.millis.behind.latest", this, CatchUpController::maxMillisBehindLatest)
+                .description("Largest millisBehindLatest reported for the shards of this worker")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Records the lag reported with a batch and returns the shard's mode for
+     * writing it. Called from the shard's KCL thread only.
+     *
+     * @param millisBehindLatest as reported by the KCL; null leaves the mode unchanged
+     */
+    public Mode update(String shardId, Long millisBehindLatest) {
+        ShardLag shard = shards.computeIfAbsent(shardId, id -> new ShardLag());
+        if (millisBehindLatest == null) {
+            return shard.mode;
+        }
+        shard.millisBehindLatest = millisBehindLatest;
+        if (!settings.isEnabled()) {
+            return shard.mode;
+        }
+        if (shard.mode == Mode.TAIL && millisBehindLatest >= settings.getEnterLagMillis()) {
+            shard.mode = Mode.CATCH_UP;
+            log.info("Shard: {} is {} ms behind - switching to catch-up mode ({} parallel writes)",
+                    shardId, millisBehindLatest, settings.getWriteConcurrency());
+        } else if (shard.mode == Mode.CATCH_UP && millisBehindLatest <= settings.getExitLagMillis()) {
+            shard.mode = Mode.TAIL;
+            log.info("Shard: {} is {} ms behind - switching to tail mode", shardId, millisBehindLatest);
+        }
+        return shard.mode;
+    }
+
+    public void unregister(String shardId) {
+        shards.remove(shardId);
+    }
+
+    public int writeConcurrency(Mode mode) {
+        return mode == Mode.CATCH_UP && writeExecutor != null ? settings.getWriteConcurrency() : 1;
+    }
+
+    /**
+     * Runs the extra writes of catch-up mode; the calling thread takes one
+     * share itself, so the pool has one thread fewer than the concurrency.
+     */
+    public Executor writeExecutor() {
+        return writeExecutor;
+    }
+
+    /**
+     * CATCH_UP while any shard is catching up.
+     */
+    public Mode mode() {
+        return catchUpShards() > 0 ? Mode.CATCH_UP : Mode.TAIL;
+    }
+
+    public int catchUpShards() {
+        int count = 0;
+        for (ShardLag shard : shards.values()) {
+            if (shard.mode == Mode.CATCH_UP) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long maxMillisBehindLatest() {
+        long max = 0;
+        for (ShardLag shard : shards.values()) {
+            max = Math.max(max, shard.millisBehindLatest);
+        }
+        return max;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writeExecutor != null) {
+            writeExecutor.shutdown();
+        }
+    }
+
+    private static ThreadFactory writerThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "catch-up-writer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Written by the shard's KCL thread, read by the gauges.
+     */
+    private static final class ShardLag {
+
+        private volatile Mode mode = Mode.TAIL;
+        private volatile long millisBehindLatest;
+    }
+}
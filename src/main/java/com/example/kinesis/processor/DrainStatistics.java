@@ -0,0 +1,40 @@
+package com.example.kinesis.processor;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects what each shard processor flushed and checkpointed while the
+ * scheduler was shutting down gracefully, so the totals can be reported once
+ * shutdown completes.
+ */
+@Component
+public class DrainStatistics {
+
+    private final AtomicInteger shardsDrained = new AtomicInteger();
+    private final AtomicInteger shardsFailed = new AtomicInteger();
+    private final AtomicLong recordsDrained = new AtomicLong();
+
+    public void recordDrained(long records) {
+        shardsDrained.incrementAndGet();
+        recordsDrained.addAndGet(records);
+    }
+
+    public void recordFailed() {
+        shardsFailed.incrementAndGet();
+    }
+
+    public int shardsDrained() {
+        return shardsDrained.get();
+    }
+
+    public int shardsFailed() {
+        return shardsFailed.get();
+    }
+
+    public long recordsDrained() {
+        return recordsDrained.get();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.model.EventRecord;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+/**
+ * Receives records that could not be processed after all retries.
+ */
+public interface FailureHandler {
+
+    /**
+     * @param event the parsed event, or {@code null} if the record could not be parsed
+     * @param cause the failure, or {@code null} if the write was rejected without an exception
+     * @return {@code true} if the record has been dealt with and may be checkpointed past,
+     *         {@code false} to hold the checkpoint before it
+     */
+    boolean handle(String shardId, KinesisClientRecord record, EventRecord event, Exception cause);
+}
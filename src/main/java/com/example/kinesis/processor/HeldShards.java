@@ -0,0 +1,36 @@
+package com.example.kinesis.processor;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shards of this worker whose checkpoint is held at a record the failure
+ * handler refused, published as {@code kinesis.consumer.checkpoint.held.shards}.
+ */
+@Component
+public class HeldShards {
+
+    private final Set<String> shards = ConcurrentHashMap.newKeySet();
+
+    public HeldShards(MeterRegistry meterRegistry) {
+        Gauge.builder("kinesis.consumer.checkpoint.held.shards", this, HeldShards::count)
+                .description("Shards of this worker whose checkpoint is held at a failed record")
+                .register(meterRegistry);
+    }
+
+    public void hold(String shardId) {
+        shards.add(shardId);
+    }
+
+    public void release(String shardId) {
+        shards.remove(shardId);
+    }
+
+    public int count() {
+        return shards.size();
+    }
+}
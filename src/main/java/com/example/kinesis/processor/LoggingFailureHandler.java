@@ -0,0 +1,41 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.model.EventRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+/**
+ * Default failure handler: logs the failed record and, depending on
+ * {@code processing.failure-mode}, either lets the checkpoint move past it or
+ * holds it so the record is replayed.
+ */
+@Slf4j
+@Component
+public class LoggingFailureHandler implements FailureHandler {
+
+    private final boolean skip;
+
+    @Autowired
+    public LoggingFailureHandler(ProcessingProperties processingProperties) {
+        this(processingProperties.getFailureMode());
+    }
+
+    public LoggingFailureHandler(ProcessingProperties.FailureMode failureMode) {
+        this.skip = failureMode == ProcessingProperties.FailureMode.SKIP;
+    }
+
+    @Override
+    public boolean handle(String shardId, KinesisClientRecord record, EventRecord event, Exception cause) {
+        if (skip) {
+            log.error("Skipping failed record - Shard: {}, Sequence Number: {}, Partition Key: {}, Event: {}",
+                    shardId, record.sequenceNumber(), record.partitionKey(), event, cause);
+        } else {
+            log.error("Holding checkpoint at failed record - Shard: {}, Sequence Number: {}, Partition Key: {}",
+                    shardId, record.sequenceNumber(), record.partitionKey(), cause);
+        }
+        return skip;
+    }
+}
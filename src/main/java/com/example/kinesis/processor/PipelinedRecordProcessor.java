@@ -0,0 +1,446 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.config.ProcessingProperties.Pipeline;
+import com.example.kinesis.hotkey.HotKeyRegistry;
+import com.example.kinesis.hotkey.HotKeyTracker;
+import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.service.DynamoDbService;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.kinesis.lifecycle.events.*;
+import software.amazon.kinesis.processor.RecordProcessorCheckpointer;
+import software.amazon.kinesis.processor.ShardRecordProcessor;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shard processor that overlaps decoding, parsing and writing. The KCL thread
+ * decodes records and hands them to a parse stage, which hands mapped events
+ * to a write stage; each stage runs on its own thread and the stages are
+ * connected by {@link SpscRingBuffer}s, so the next batch is parsed while the
+ * previous one is being written.
+ *
+ * <p>Checkpoints follow the write stage: it publishes the last record of the
+ * contiguous prefix that is persisted or accepted by the failure handler, and
+ * the KCL thread checkpoints at that record on its next call. Hot keys are
+ * tracked as in {@link RecordProcessor}; write coalescing is not applied here.
+ * In catch-up mode the write stage takes {@code write-concurrency} times as
+ * many events per write and splits them into parallel writes.
+ */
+@Slf4j
+public class PipelinedRecordProcessor implements ShardRecordProcessor {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long JOIN_TIMEOUT_MILLIS = 5000L;
+
+    private final RetryingWriter writer;
+    private final DrainStatistics drainStatistics;
+    private final StartupMetrics startupMetrics;
+    private final FailureHandler failureHandler;
+    private final HotKeyRegistry hotKeyRegistry;
+    private final Pipeline settings;
+    private final String streamName;
+    private final CatchUpController catchUpController;
+
+    private String shardId;
+    private HotKeyTracker hotKeys;
+    private SpscRingBuffer<Item> decoded;
+    private SpscRingBuffer<Item> parsed;
+    private Thread parseStage;
+    private Thread writeStage;
+    private final Wakeup parseWakeup = new Wakeup();
+    private final Wakeup writeWakeup = new Wakeup();
+    private volatile boolean running;
+
+    // KCL thread only
+    private long enqueued;
+    private KinesisClientRecord lastCheckpointed;
+    private long checkpointedCount;
+
+    // Written by the write stage, read by the KCL thread
+    private final AtomicLong completed = new AtomicLong();
+    private volatile KinesisClientRecord committed;
+    private volatile long committedCount;
+    private volatile KinesisClientRecord heldAt;
+
+    // Written by the KCL thread, read by the write stage
+    private volatile int writeConcurrency = 1;
+
+    /**
+     * Built with {@link #builder()}; the optional collaborators may be left unset.
+     *
+     * @param streamName        source stream in multi-stream mode, or null; shard
+     *                          ids in logs and hot keys are qualified with it
+     * @param catchUpController switches writes between tail and catch-up mode, or
+     *                          null to always write one batch at a time
+     */
+    @Builder
+    private PipelinedRecordProcessor(DynamoDbService dynamoDbService, DrainStatistics drainStatistics,
+                                     StartupMetrics startupMetrics, RetryPolicy retryPolicy,
+                                     FailureHandler failureHandler, HotKeyRegistry hotKeyRegistry,
+                                     Pipeline settings, String streamName, CatchUpController catchUpController) {
+        this.writer = new RetryingWriter(dynamoDbService, retryPolicy, streamName);
+        this.drainStatistics = drainStatistics;
+        this.startupMetrics = startupMetrics;
+        this.failureHandler = failureHandler;
+        this.hotKeyRegistry = hotKeyRegistry;
+        this.settings = settings;
+        this.streamName = streamName;
+        this.catchUpController = catchUpController;
+    }
+
+    @Override
+    public void initialize(InitializationInput initializationInput) {
+        shardId = streamName == null
+                ? initializationInput.shardId() : streamName + ":" + initializationInput.shardId();
+        hotKeys = hotKeyRegistry.register(shardId);
+        decoded = new SpscRingBuffer<>(settings.getRingCapacity());
+        parsed = new SpscRingBuffer<>(settings.getRingCapacity());
+        running = true;
+        parseStage = startStage("parse", this::runParseStage);
+        writeStage = startStage("write", this::runWriteStage);
+        log.info("Initializing pipelined record processor for shard: {} (ring capacity {}, write batch {})",
+                shardId, decoded.capacity(), settings.getWriteBatchSize());
+    }
+
+    @Override
+    public void processRecords(ProcessRecordsInput processRecordsInput) {
+        List<KinesisClientRecord> records = processRecordsInput.records();
+        log.debug("Enqueuing {} records from shard: {}", records.size(), shardId);
+        if (catchUpController != null) {
+            writeConcurrency = catchUpController.writeConcurrency(
+                    catchUpController.update(shardId, processRecordsInput.millisBehindLatest()));
+        }
+
+        for (int i = 0; i < records.size(); i++) {
+            KinesisClientRecord record = records.get(i);
+            Item item = new Item(record, StandardCharsets.UTF_8.decode(record.data()).toString());
+            if (!put(decoded, parseWakeup, item)) {
+                // Nothing past this record is committed, so it is replayed by the next lease owner
+                log.error("Pipeline for shard: {} is stopped - dropped {} records from sequence number {}",
+                        shardId, records.size() - i, record.sequenceNumber());
+                break;
+            }
+            enqueued++;
+        }
+
+        checkpointCommitted(processRecordsInput.checkpointer());
+    }
+
+    @Override
+    public void leaseLost(LeaseLostInput leaseLostInput) {
+        log.warn("Lease lost for shard: {} - discarding {} queued records", shardId, enqueued - completed.get());
+        hotKeyRegistry.unregister(shardId);
+        if (catchUpController != null) {
+            catchUpController.unregister(shardId);
+        }
+        stop(true);
+    }
+
+    @Override
+    public void shardEnded(ShardEndedInput shardEndedInput) {
+        log.info("Shard ended: {}", shardId);
+        hotKeyRegistry.unregister(shardId);
+        if (catchUpController != null) {
+            catchUpController.unregister(shardId);
+        }
+        boolean drained = drain();
+        stop(!drained);
+        RecordProcessorCheckpointer checkpointer = shardEndedInput.checkpointer();
+        if (!drained || heldAt != null) {
+            // Checkpointing at SHARD_END would skip the unwritten or held records for good
+            log.error("Not checkpointing end of shard: {} - {} queued records not written, checkpoint held before {}",
+                    shardId, enqueued - completed.get(), heldAt == null ? "none" : heldAt.sequenceNumber());
+            checkpointCommitted(checkpointer);
+            return;
+        }
+        try {
+            checkpointer.checkpoint();
+        } catch (Exception e) {
+            log.error("Error checkpointing at shard end: {}", shardId, e);
+        }
+    }
+
+    @Override
+    public void shutdownRequested(ShutdownRequestedInput shutdownRequestedInput) {
+        log.info("Shutdown requested for shard: {} ({} records queued in the pipeline)",
+                shardId, enqueued - completed.get());
+        hotKeyRegistry.unregister(shardId);
+        if (catchUpController != null) {
+            catchUpController.unregister(shardId);
+        }
+        boolean drained = drain();
+        stop(!drained);
+        long before = checkpointedCount;
+        if (!drained) {
+            log.warn("Pipeline for shard: {} did not drain within {} ms", shardId, settings.getDrainTimeoutMillis());
+        }
+        if (checkpointCommitted(shutdownRequestedInput.checkpointer())) {
+            drainStatistics.recordDrained(checkpointedCount - before);
+            log.info("Drained shard: {} - checkpointed {} records at shutdown", shardId, checkpointedCount - before);
+        } else {
+            drainStatistics.recordFailed();
+        }
+    }
+
+    private Thread startStage(String name, Runnable stage) {
+        Thread thread = new Thread(stage, "pipeline-" + name + "-" + shardId);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void runParseStage() {
+        int idle = 0;
+        while (running) {
+            Item item = decoded.poll();
+            if (item == null) {
+                parseWakeup.await(idle++, decoded);
+                continue;
+            }
+            idle = 0;
+            parse(item);
+            if (!put(parsed, writeWakeup, item)) {
+                return;
+            }
+        }
+    }
+
+    private void parse(Item item) {
+        try {
+            item.event = EventRecord.fromJson(item.data);
+            if (hotKeys != null) {
+                hotKeys.record(item.record.partitionKey(), item.event.getId(), System.currentTimeMillis());
+            }
+        } catch (Exception e) {
+            log.error("Error processing record: {}", item.record.sequenceNumber(), e);
+            item.event = null;
+            item.done = failureHandler.handle(shardId, item.record, null, e);
+        }
+    }
+
+    private void runWriteStage() {
+        List<Item> batch = new ArrayList<>(settings.getWriteBatchSize());
+        int idle = 0;
+        while (running) {
+            int concurrency = writeConcurrency;
+            if (parsed.drainTo(batch, settings.getWriteBatchSize() * concurrency) == 0) {
+                writeWakeup.await(idle++, parsed);
+                continue;
+            }
+            idle = 0;
+            try {
+                write(batch, concurrency);
+            } catch (Exception e) {
+                // Leaves the affected records not done, so the checkpoint is held before them
+                log.error("Unexpected error in write stage for shard: {}", shardId, e);
+            }
+            advance(batch);
+            completed.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void write(List<Item> batch, int concurrency) {
+        List<EventRecord> events = new ArrayList<>(batch.size());
+        Map<EventRecord, Item> items = new IdentityHashMap<>(batch.size());
+        for (Item item : batch) {
+            if (item.event != null) {
+                events.add(item.event);
+                items.put(item.event, item);
+            }
+        }
+
+        RetryingWriter.Result result = concurrency > 1
+                ? writer.write(shardId, events, concurrency, catchUpController.writeExecutor())
+                : writer.write(shardId, events);
+        List<EventRecord> failed = result.getFailed();
+        if (failed.size() < events.size()) {
+            startupMetrics.recordFirstRecord();
+        }
+
+        Set<EventRecord> failedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        failedSet.addAll(failed);
+        for (EventRecord event : events) {
+            Item item = items.get(event);
+            item.done = !failedSet.contains(event)
+                    || failureHandler.handle(shardId, item.record, event, result.getError());
+        }
+        log.debug("Write stage saved {} records from shard: {}", events.size() - failed.size(), shardId);
+    }
+
+    /**
+     * Moves the committed position over the done prefix of the batch and holds
+     * it at the first record that is not done.
+     */
+    private void advance(List<Item> batch) {
+        KinesisClientRecord last = null;
+        long count = 0;
+        for (Item item : batch) {
+            if (heldAt != null) {
+                break;
+            }
+            if (item.done) {
+                last = item.record;
+                count++;
+            } else {
+                heldAt = item.record;
+                log.warn("Holding checkpoint for shard: {} before sequence number {}",
+                        shardId, item.record.sequenceNumber());
+            }
+        }
+        if (last != null) {
+            committedCount += count;
+            committed = last;
+        }
+    }
+
+    /**
+     * Checkpoints at the write stage's committed record if it moved since the
+     * last checkpoint.
+     *
+     * @return false if checkpointing failed
+     */
+    private boolean checkpointCommitted(RecordProcessorCheckpointer checkpointer) {
+        KinesisClientRecord target = committed;
+        long count = committedCount;
+        if (target == null || target == lastCheckpointed) {
+            return true;
+        }
+        try {
+            checkpointer.checkpoint(target.sequenceNumber(), target.subSequenceNumber());
+            lastCheckpointed = target;
+            checkpointedCount = count;
+            log.debug("Checkpoint successful for shard: {} at sequence number {}", shardId, target.sequenceNumber());
+            return true;
+        } catch (Exception e) {
+            log.error("Error checkpointing for shard: {}", shardId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Waits until the write stage has handled every enqueued record.
+     */
+    private boolean drain() {
+        long deadline = System.currentTimeMillis() + settings.getDrainTimeoutMillis();
+        int idle = 0;
+        while (completed.get() < enqueued) {
+            if (!running || System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            idle(idle++);
+        }
+        return true;
+    }
+
+    private void stop(boolean interrupt) {
+        running = false;
+        for (Thread stage : new Thread[] {parseStage, writeStage}) {
+            if (stage == null) {
+                continue;
+            }
+            if (interrupt) {
+                stage.interrupt();
+            } else {
+                LockSupport.unpark(stage);
+            }
+            try {
+                stage.join(JOIN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Blocks until the ring accepts the item or the pipeline stops, then wakes
+     * the ring's consumer if it is parked.
+     */
+    private boolean put(SpscRingBuffer<Item> ring, Wakeup consumer, Item item) {
+        int idle = 0;
+        while (!ring.offer(item)) {
+            if (!running) {
+                return false;
+            }
+            idle(idle++);
+        }
+        consumer.wake();
+        return true;
+    }
+
+    private static void idle(int count) {
+        if (count < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (count < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Parks the consumer of an empty ring until its producer publishes. Short
+     * gaps are bridged by spinning and yielding as in {@link #idle}; after that
+     * the stage parks with a timeout that doubles up to
+     * {@link #MAX_IDLE_PARK_NANOS}, so an idle shard costs a few wake-ups per
+     * second. The producer's store and its read of {@code parked} are not
+     * fenced against each other, so a wake-up can be missed; the timeout bounds
+     * the delay that causes.
+     */
+    private static final class Wakeup {
+
+        private volatile Thread parked;
+
+        void await(int idleCount, SpscRingBuffer<?> ring) {
+            if (idleCount < YIELD_TRIES) {
+                idle(idleCount);
+                return;
+            }
+            parked = Thread.currentThread();
+            if (ring.size() == 0) {
+                int doublings = Math.min(idleCount - YIELD_TRIES, 10);
+                LockSupport.parkNanos(Math.min(PARK_NANOS << doublings, MAX_IDLE_PARK_NANOS));
+            }
+            parked = null;
+        }
+
+        void wake() {
+            Thread thread = parked;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * A record moving through the stages. Fields are set by one stage before
+     * the item is published to the next ring, which makes them visible there.
+     */
+    private static final class Item {
+
+        private final KinesisClientRecord record;
+        private final String data;
+        private EventRecord event;
+        private boolean done;
+
+        private Item(KinesisClientRecord record, String data) {
+            this.record = record;
+            this.data = data;
+        }
+    }
+}
@@ -1,77 +1,451 @@
 package com.example.kinesis.processor;
 
+import com.example.kinesis.aggregation.RollupService;
+import com.example.kinesis.aggregation.WindowAggregator;
+import com.example.kinesis.hotkey.HotKeyRegistry;
+import com.example.kinesis.hotkey.HotKeyTracker;
 import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.model.EventRecordSchema;
 import com.example.kinesis.service.DynamoDbService;
-import lombok.RequiredArgsConstructor;
+import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.kinesis.exceptions.InvalidStateException;
 import software.amazon.kinesis.exceptions.ShutdownException;
 import software.amazon.kinesis.lifecycle.events.*;
+import software.amazon.kinesis.processor.RecordProcessorCheckpointer;
 import software.amazon.kinesis.processor.ShardRecordProcessor;
 import software.amazon.kinesis.retrieval.KinesisClientRecord;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Slf4j
-@RequiredArgsConstructor
 public class RecordProcessor implements ShardRecordProcessor {
 
-    private final DynamoDbService dynamoDbService;
+    private final RetryingWriter writer;
+    private final DrainStatistics drainStatistics;
+    private final StartupMetrics startupMetrics;
+    private final FailureHandler failureHandler;
+    private final HotKeyRegistry hotKeyRegistry;
+    private final RollupService rollupService;
+    private final String streamName;
+    private final CatchUpController catchUpController;
+    private final HeldShards heldShards;
     private String shardId;
+    private HotKeyTracker hotKeys;
+    private WindowAggregator aggregator;
+
+    // Position of the next record in this processor's stream, and the record before it
+    private long nextIndex;
+    private KinesisClientRecord previousRecord;
+
+    // Last record of the contiguous successful prefix that has not been checkpointed yet
+    private KinesisClientRecord lastPersisted;
+    private long lastPersistedIndex = -1;
+    private long persistedSinceCheckpoint;
+    private KinesisClientRecord aggregationCheckpointed;
+
+    // First record the failure handler refused; no checkpoint moves past it while the lease is held
+    private KinesisClientRecord heldAt;
+    private long heldAtIndex = -1;
+
+    // Every refused record by its position, written again on each later poll until it succeeds
+    private final TreeMap<Long, Blocked> blocked = new TreeMap<>();
+
+    /**
+     * Built with {@link #builder()}; the optional collaborators may be left unset.
+     *
+     * @param rollupService     aggregates routes with {@code aggregate: true}, or null
+     * @param streamName        source stream in multi-stream mode, or null; shard
+     *                          ids in logs, hot keys and rollups are qualified with it
+     * @param catchUpController switches writes between tail and catch-up mode, or
+     *                          null to always write on the KCL thread
+     * @param heldShards        publishes whether the checkpoint is held, or null
+     */
+    @Builder
+    private RecordProcessor(DynamoDbService dynamoDbService, DrainStatistics drainStatistics,
+                            StartupMetrics startupMetrics, RetryPolicy retryPolicy, FailureHandler failureHandler,
+                            HotKeyRegistry hotKeyRegistry, RollupService rollupService, String streamName,
+                            CatchUpController catchUpController, HeldShards heldShards) {
+        this.writer = new RetryingWriter(dynamoDbService, retryPolicy, streamName);
+        this.drainStatistics = drainStatistics;
+        this.startupMetrics = startupMetrics;
+        this.failureHandler = failureHandler;
+        this.hotKeyRegistry = hotKeyRegistry;
+        this.rollupService = rollupService;
+        this.streamName = streamName;
+        this.catchUpController = catchUpController;
+        this.heldShards = heldShards;
+    }
 
     @Override
     public void initialize(InitializationInput initializationInput) {
-        shardId = initializationInput.shardId();
+        shardId = streamName == null
+                ? initializationInput.shardId() : streamName + ":" + initializationInput.shardId();
+        hotKeys = hotKeyRegistry.register(shardId);
+        aggregator = rollupService == null ? null : rollupService.newAggregator(shardId);
         log.info("Initializing record processor for shard: {}", shardId);
     }
 
     @Override
     public void processRecords(ProcessRecordsInput processRecordsInput) {
-        log.debug("Processing {} records from shard: {}", 
-                processRecordsInput.records().size(), shardId);
+        List<KinesisClientRecord> records = processRecordsInput.records();
+        if (records.isEmpty()) {
+            processIdle(processRecordsInput);
+            return;
+        }
+        log.debug("Processing {} records from shard: {}", records.size(), shardId);
+        retryBlocked();
+
+        // done[i] is set once record i is persisted or accepted by the failure handler
+        boolean[] done = new boolean[records.size()];
+        List<EventRecord> events = new ArrayList<>(records.size());
+        Map<EventRecord, Integer> positions = new IdentityHashMap<>(records.size());
+        EventRecord[] parsed = new EventRecord[records.size()];
+        KinesisClientRecord batchPrevious = previousRecord;
+        long now = System.currentTimeMillis();
+        Long millisBehindLatest = processRecordsInput.millisBehindLatest();
+        long batchStart = nextIndex;
 
-        for (KinesisClientRecord record : processRecordsInput.records()) {
+        for (int i = 0; i < records.size(); i++) {
+            KinesisClientRecord record = records.get(i);
+            KinesisClientRecord previous = i == 0 ? previousRecord : records.get(i - 1);
             try {
-                processRecord(record);
+                EventRecord event = processRecord(record);
+                parsed[i] = event;
+                if (aggregator == null || aggregator.add(batchStart + i, record, previous, event)) {
+                    events.add(event);
+                    positions.put(event, i);
+                } else {
+                    // Counted in an open window; the checkpoint is held until the window is written
+                    done[i] = true;
+                }
+                if (hotKeys != null) {
+                    hotKeys.record(record.partitionKey(), event.getId(), now);
+                }
             } catch (Exception e) {
                 log.error("Error processing record: {}", record.sequenceNumber(), e);
-                // Depending on your requirements, you might want to:
-                // 1. Continue processing other records
-                // 2. Send to DLQ (Dead Letter Queue)
-                // 3. Retry logic
+                done[i] = failureHandler.handle(shardId, record, null, e);
+            }
+        }
+        nextIndex += records.size();
+        if (!records.isEmpty()) {
+            previousRecord = records.get(records.size() - 1);
+        }
+
+        if (hotKeys != null && hotKeyRegistry.isCoalesceWrites()) {
+            events = coalesceHotEvents(events, positions, done, now);
+        }
+
+        RetryingWriter.Result result = write(events, millisBehindLatest);
+        List<EventRecord> failed = result.getFailed();
+        if (failed.size() < events.size()) {
+            startupMetrics.recordFirstRecord();
+        }
+
+        Set<EventRecord> failedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        failedSet.addAll(failed);
+        for (EventRecord event : events) {
+            int position = positions.get(event);
+            if (failedSet.contains(event)) {
+                done[position] = failureHandler.handle(shardId, records.get(position), event, result.getError());
+            } else {
+                done[position] = true;
+            }
+        }
+        log.info("Successfully processed and saved {} records from shard: {}",
+                events.size() - failed.size(), shardId);
+        if (aggregator != null) {
+            aggregator.advanceAtTip(now, millisBehindLatest);
+            aggregator.flushClosed();
+        }
+
+        int contiguous = 0;
+        while (contiguous < done.length && done[contiguous]) {
+            contiguous++;
+        }
+
+        for (int i = contiguous; i < records.size(); i++) {
+            if (!done[i]) {
+                blocked.put(batchStart + i,
+                        new Blocked(records.get(i), i == 0 ? batchPrevious : records.get(i - 1), parsed[i]));
+            }
+        }
+
+        if (heldAt != null) {
+            log.warn("Checkpoint for shard: {} is held before sequence number {} ({} records waiting for a retry)",
+                    shardId, heldAt.sequenceNumber(), blocked.size());
+            // A retry may have moved the hold forward
+            checkpoint(processRecordsInput.checkpointer(), false);
+            return;
+        }
+        if (contiguous > 0) {
+            lastPersisted = records.get(contiguous - 1);
+            lastPersistedIndex = batchStart + contiguous - 1;
+            persistedSinceCheckpoint += contiguous;
+        }
+        if (contiguous < records.size()) {
+            heldAt = records.get(contiguous);
+            heldAtIndex = batchStart + contiguous;
+            markHeld(true);
+            log.warn("Holding checkpoint for shard: {} before sequence number {} ({} of {} records done)",
+                    shardId, heldAt.sequenceNumber(), contiguous, records.size());
+        }
+        checkpoint(processRecordsInput.checkpointer(), contiguous == records.size());
+    }
+
+    /**
+     * Handles an empty poll, which the KCL delivers so that blocked records of
+     * an idle shard are retried, its windows close by the wall clock, and the
+     * checkpoint either held can move.
+     */
+    private void processIdle(ProcessRecordsInput processRecordsInput) {
+        long held = heldAtIndex;
+        retryBlocked();
+        boolean moved = heldAtIndex != held;
+        if (aggregator != null) {
+            int open = aggregator.openWindowCount();
+            aggregator.advanceAtTip(System.currentTimeMillis(), processRecordsInput.millisBehindLatest());
+            aggregator.flushClosed();
+            moved |= aggregator.openWindowCount() < open;
+        }
+        if (moved) {
+            checkpoint(processRecordsInput.checkpointer(), false);
+        }
+    }
+
+    /**
+     * Writes the blocked records again. Once none is left, everything processed
+     * so far can be checkpointed; otherwise the hold moves up to the first
+     * record still blocked. Records that could not be parsed stay blocked.
+     */
+    private void retryBlocked() {
+        if (blocked.isEmpty()) {
+            return;
+        }
+        List<EventRecord> events = new ArrayList<>(blocked.size());
+        Map<EventRecord, Long> indexes = new IdentityHashMap<>(blocked.size());
+        for (Map.Entry<Long, Blocked> entry : blocked.entrySet()) {
+            EventRecord event = entry.getValue().event;
+            if (event != null) {
+                events.add(event);
+                indexes.put(event, entry.getKey());
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        Set<EventRecord> failedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        failedSet.addAll(writer.write(shardId, events).getFailed());
+        for (EventRecord event : events) {
+            if (!failedSet.contains(event)) {
+                blocked.remove(indexes.get(event));
+            }
+        }
+
+        if (blocked.isEmpty()) {
+            log.info("Released checkpoint for shard: {} held before sequence number {}",
+                    shardId, heldAt.sequenceNumber());
+            persistedSinceCheckpoint += nextIndex - heldAtIndex;
+            lastPersisted = previousRecord;
+            lastPersistedIndex = nextIndex - 1;
+            heldAt = null;
+            heldAtIndex = -1;
+            markHeld(false);
+        } else if (blocked.firstKey() > heldAtIndex) {
+            Map.Entry<Long, Blocked> first = blocked.firstEntry();
+            persistedSinceCheckpoint += first.getKey() - heldAtIndex;
+            if (first.getValue().before != null) {
+                lastPersisted = first.getValue().before;
+                lastPersistedIndex = first.getKey() - 1;
+            }
+            heldAt = first.getValue().record;
+            heldAtIndex = first.getKey();
+            log.warn("Holding checkpoint for shard: {} before sequence number {} ({} records still blocked)",
+                    shardId, heldAt.sequenceNumber(), blocked.size());
+        } else {
+            log.warn("Retry of {} blocked records on shard: {} failed - checkpoint still held before {}",
+                    blocked.size(), shardId, heldAt.sequenceNumber());
+        }
+    }
+
+    private void markHeld(boolean held) {
+        if (heldShards == null) {
+            return;
+        }
+        if (held) {
+            heldShards.hold(shardId);
+        } else {
+            heldShards.release(shardId);
+        }
+    }
+
+    private RetryingWriter.Result write(List<EventRecord> events, Long millisBehindLatest) {
+        if (catchUpController == null) {
+            return writer.write(shardId, events);
+        }
+        CatchUpController.Mode mode = catchUpController.update(shardId, millisBehindLatest);
+        return writer.write(shardId, events, catchUpController.writeConcurrency(mode),
+                catchUpController.writeExecutor());
+    }
+
+    private EventRecord processRecord(KinesisClientRecord record) {
+        String data = StandardCharsets.UTF_8.decode(record.data()).toString();
+        log.info("Processing record - Partition Key: {}, Sequence Number: {}, Data: {}",
+                record.partitionKey(), record.sequenceNumber(), data);
+
+        // Parse the record and create EventRecord
+        return EventRecord.fromJson(data);
+    }
+
+    /**
+     * Keeps only the newest event of each hot item in the batch. The older
+     * ones are marked done without being written.
+     */
+    private List<EventRecord> coalesceHotEvents(List<EventRecord> events, Map<EventRecord, Integer> positions,
+                                                boolean[] done, long now) {
+        Set<String> hotIds = hotKeys.hotEventIds(now);
+        if (hotIds.isEmpty()) {
+            return events;
+        }
+        List<EventRecord> kept = newestPerItem(events, hotIds);
+        if (kept.size() < events.size()) {
+            Set<EventRecord> keptSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            keptSet.addAll(kept);
+            for (EventRecord event : events) {
+                if (!keptSet.contains(event)) {
+                    done[positions.get(event)] = true;
+                }
+            }
+            hotKeyRegistry.recordCoalesced(events.size() - kept.size());
+            log.debug("Coalesced {} writes for hot event ids on shard: {}", events.size() - kept.size(), shardId);
+        }
+        return kept;
+    }
+
+    /**
+     * Drops the events of hot ids that a later event in the batch overwrites,
+     * i.e. that share its primary key. Events of the same id with a different
+     * timestamp are separate items and are all kept.
+     */
+    static List<EventRecord> newestPerItem(List<EventRecord> events, Set<String> hotIds) {
+        Set<String> seen = new HashSet<>();
+        List<EventRecord> kept = new ArrayList<>(events.size());
+        for (int i = events.size() - 1; i >= 0; i--) {
+            EventRecord event = events.get(i);
+            if (!hotIds.contains(event.getId()) || seen.add(EventRecordSchema.itemKey(event))) {
+                kept.add(event);
             }
         }
+        Collections.reverse(kept);
+        return kept;
+    }
 
+    /**
+     * Checkpoints the whole batch when every record is done, otherwise the
+     * contiguous successful prefix.
+     */
+    private void checkpoint(RecordProcessorCheckpointer checkpointer, boolean wholeBatch) {
+        if (isHeldByAggregation()) {
+            checkpointAggregationLimit(checkpointer);
+            return;
+        }
         try {
-            processRecordsInput.checkpointer().checkpoint();
+            if (wholeBatch) {
+                checkpointer.checkpoint();
+            } else if (lastPersisted != null) {
+                checkpointer.checkpoint(lastPersisted.sequenceNumber(), lastPersisted.subSequenceNumber());
+            } else {
+                return;
+            }
+            lastPersisted = null;
+            persistedSinceCheckpoint = 0;
             log.debug("Checkpoint successful for shard: {}", shardId);
         } catch (Exception e) {
             log.error("Error checkpointing for shard: {}", shardId, e);
         }
     }
 
-    private void processRecord(KinesisClientRecord record) {
-        String data = StandardCharsets.UTF_8.decode(record.data()).toString();
-        log.info("Processing record - Partition Key: {}, Sequence Number: {}, Data: {}", 
-                record.partitionKey(), record.sequenceNumber(), data);
+    /**
+     * Whether an open aggregation window started at or before the record the
+     * next checkpoint would be taken at. That record is never at or past
+     * {@code heldAt}, so neither is the aggregation limit before the window.
+     */
+    private boolean isHeldByAggregation() {
+        return aggregator != null && aggregator.holdsBefore(nextCheckpointIndex());
+    }
 
-        // Parse the record and create EventRecord
-        EventRecord eventRecord = EventRecord.fromJson(data);
-        
-        // Save to DynamoDB
-        dynamoDbService.saveEvent(eventRecord);
-        
-        log.info("Successfully processed and saved record: {}", record.sequenceNumber());
+    private long nextCheckpointIndex() {
+        if (lastPersisted != null) {
+            return lastPersistedIndex;
+        }
+        return heldAt != null ? heldAtIndex - 1 : nextIndex - 1;
+    }
+
+    /**
+     * Checkpoints just before the first record of the oldest open window, so a
+     * restart rebuilds the window from the stream. Persisted records after it
+     * stay pending and are checkpointed once the window is written.
+     */
+    private void checkpointAggregationLimit(RecordProcessorCheckpointer checkpointer) {
+        KinesisClientRecord limit = aggregator.checkpointLimit();
+        if (limit == null || limit == aggregationCheckpointed) {
+            return;
+        }
+        try {
+            checkpointer.checkpoint(limit.sequenceNumber(), limit.subSequenceNumber());
+            aggregationCheckpointed = limit;
+            log.debug("Checkpoint for shard: {} held at sequence number {} by {} open windows",
+                    shardId, limit.sequenceNumber(), aggregator.openWindowCount());
+        } catch (Exception e) {
+            log.error("Error checkpointing for shard: {}", shardId, e);
+        }
     }
 
     @Override
     public void leaseLost(LeaseLostInput leaseLostInput) {
         log.warn("Lease lost for shard: {}", shardId);
+        hotKeyRegistry.unregister(shardId);
+        if (catchUpController != null) {
+            catchUpController.unregister(shardId);
+        }
+        lastPersisted = null;
+        persistedSinceCheckpoint = 0;
+        heldAt = null;
+        heldAtIndex = -1;
+        blocked.clear();
+        markHeld(false);
+        // Open windows are rebuilt by the new owner from the last checkpoint
+        aggregator = null;
     }
 
     @Override
     public void shardEnded(ShardEndedInput shardEndedInput) {
         log.info("Shard ended: {}", shardId);
+        hotKeyRegistry.unregister(shardId);
+        if (catchUpController != null) {
+            catchUpController.unregister(shardId);
+        }
+        markHeld(false);
+        if (aggregator != null && !aggregator.flushAll()) {
+            log.error("Not checkpointing end of shard: {} - {} aggregation windows could not be written",
+                    shardId, aggregator.openWindowCount());
+            return;
+        }
+        retryBlocked();
+        if (heldAt != null) {
+            // Checkpointing at SHARD_END would skip the held record for good
+            log.error("Not checkpointing end of shard: {} - checkpoint is held before sequence number {}",
+                    shardId, heldAt.sequenceNumber());
+            return;
+        }
         try {
             shardEndedInput.checkpointer().checkpoint();
         } catch (ShutdownException | InvalidStateException e) {
@@ -81,11 +455,50 @@ public class RecordProcessor implements ShardRecordProcessor {
 
     @Override
     public void shutdownRequested(ShutdownRequestedInput shutdownRequestedInput) {
-        log.info("Shutdown requested for shard: {}", shardId);
+        // The scheduler has stopped fetching and any in-flight processRecords call
+        // has returned, so everything persisted so far can be checkpointed.
+        log.info("Shutdown requested for shard: {} ({} persisted records not yet checkpointed)",
+                shardId, persistedSinceCheckpoint);
+        hotKeyRegistry.unregister(shardId);
+        if (catchUpController != null) {
+            catchUpController.unregister(shardId);
+        }
+        markHeld(false);
+        if (isHeldByAggregation()) {
+            // Open windows are not written early: the next owner rebuilds them from the stream
+            checkpointAggregationLimit(shutdownRequestedInput.checkpointer());
+            drainStatistics.recordDrained(0);
+            log.info("Drained shard: {} - checkpoint held by {} open aggregation windows",
+                    shardId, aggregator.openWindowCount());
+            return;
+        }
         try {
-            shutdownRequestedInput.checkpointer().checkpoint();
-        } catch (ShutdownException | InvalidStateException e) {
+            if (lastPersisted != null) {
+                shutdownRequestedInput.checkpointer().checkpoint(
+                        lastPersisted.sequenceNumber(), lastPersisted.subSequenceNumber());
+            } else if (heldAt == null) {
+                shutdownRequestedInput.checkpointer().checkpoint();
+            }
+            drainStatistics.recordDrained(persistedSinceCheckpoint);
+            log.info("Drained shard: {} - checkpointed {} records at shutdown", shardId, persistedSinceCheckpoint);
+            lastPersisted = null;
+            persistedSinceCheckpoint = 0;
+        } catch (Exception e) {
+            drainStatistics.recordFailed();
             log.error("Error checkpointing at shutdown: {}", shardId, e);
         }
     }
+
+    private static final class Blocked {
+
+        private final KinesisClientRecord record;
+        private final KinesisClientRecord before;
+        private final EventRecord event;
+
+        private Blocked(KinesisClientRecord record, KinesisClientRecord before, EventRecord event) {
+            this.record = record;
+            this.before = before;
+            this.event = event;
+        }
+    }
 }
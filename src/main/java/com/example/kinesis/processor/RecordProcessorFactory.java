@@ -1,19 +1,131 @@
 package com.example.kinesis.processor;
 
+import com.example.kinesis.aggregation.RollupService;
+import com.example.kinesis.backfill.BackfillCoordinator;
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.config.StreamsProperties;
+import com.example.kinesis.hotkey.HotKeyRegistry;
 import com.example.kinesis.service.DynamoDbService;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import software.amazon.kinesis.common.StreamIdentifier;
 import software.amazon.kinesis.processor.ShardRecordProcessor;
 import software.amazon.kinesis.processor.ShardRecordProcessorFactory;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Component
-@RequiredArgsConstructor
 public class RecordProcessorFactory implements ShardRecordProcessorFactory {
 
     private final DynamoDbService dynamoDbService;
+    private final DrainStatistics drainStatistics;
+    private final StartupMetrics startupMetrics;
+    private final RetryPolicy retryPolicy;
+    private final FailureHandler failureHandler;
+    private final HotKeyRegistry hotKeyRegistry;
+    private final ProcessingProperties.Pipeline pipeline;
+    private final RollupService rollupService;
+    private final CatchUpController catchUpController;
+    private final BackfillCoordinator backfillCoordinator;
+    private final HeldShards heldShards;
+
+    // Per-stream overrides in multi-stream mode, keyed by stream name
+    private final Map<String, RetryPolicy> streamRetryPolicies = new HashMap<>();
+    private final Map<String, FailureHandler> streamFailureHandlers = new HashMap<>();
+
+    public RecordProcessorFactory(DynamoDbService dynamoDbService,
+                                  DrainStatistics drainStatistics,
+                                  StartupMetrics startupMetrics,
+                                  ProcessingProperties processingProperties,
+                                  FailureHandler failureHandler,
+                                  HotKeyRegistry hotKeyRegistry,
+                                  RollupService rollupService) {
+        this(dynamoDbService, drainStatistics, startupMetrics, processingProperties, failureHandler, hotKeyRegistry,
+                rollupService, null, null, new StreamsProperties(), null);
+    }
+
+    @Autowired
+    public RecordProcessorFactory(DynamoDbService dynamoDbService,
+                                  DrainStatistics drainStatistics,
+                                  StartupMetrics startupMetrics,
+                                  ProcessingProperties processingProperties,
+                                  FailureHandler failureHandler,
+                                  HotKeyRegistry hotKeyRegistry,
+                                  RollupService rollupService,
+                                  CatchUpController catchUpController,
+                                  BackfillCoordinator backfillCoordinator,
+                                  StreamsProperties streamsProperties,
+                                  HeldShards heldShards) {
+        this.dynamoDbService = dynamoDbService;
+        this.drainStatistics = drainStatistics;
+        this.startupMetrics = startupMetrics;
+        this.retryPolicy = RetryPolicy.from(processingProperties.getRetry());
+        this.failureHandler = failureHandler;
+        this.hotKeyRegistry = hotKeyRegistry;
+        this.pipeline = processingProperties.getPipeline();
+        this.rollupService = rollupService;
+        this.catchUpController = catchUpController;
+        this.backfillCoordinator = backfillCoordinator;
+        this.heldShards = heldShards;
+        if (pipeline.isEnabled() && rollupService != null && rollupService.isEnabled()) {
+            throw new IllegalStateException("processing.aggregation is not supported with processing.pipeline");
+        }
+        for (StreamsProperties.Stream stream : streamsProperties.getStreams()) {
+            if (stream.getRetry() != null) {
+                streamRetryPolicies.put(stream.getName(), RetryPolicy.from(stream.getRetry()));
+            }
+            if (stream.getFailureMode() != null) {
+                streamFailureHandlers.put(stream.getName(), new LoggingFailureHandler(stream.getFailureMode()));
+            }
+        }
+    }
 
     @Override
     public ShardRecordProcessor shardRecordProcessor() {
-        return new RecordProcessor(dynamoDbService);
+        return create(null);
+    }
+
+    /**
+     * Called by the KCL in multi-stream mode, so each processor writes to its
+     * stream's table with the stream's failure mode and retries.
+     */
+    @Override
+    public ShardRecordProcessor shardRecordProcessor(StreamIdentifier streamIdentifier) {
+        return create(streamIdentifier.streamName());
+    }
+
+    private ShardRecordProcessor create(String streamName) {
+        RetryPolicy retryPolicy = streamRetryPolicies.getOrDefault(streamName, this.retryPolicy);
+        FailureHandler failureHandler = streamFailureHandlers.getOrDefault(streamName, this.failureHandler);
+        if (backfillCoordinator != null && backfillCoordinator.isEnabled()) {
+            return new BackfillRecordProcessor(dynamoDbService, retryPolicy, failureHandler, backfillCoordinator,
+                    streamName);
+        }
+        if (pipeline.isEnabled()) {
+            return PipelinedRecordProcessor.builder()
+                    .dynamoDbService(dynamoDbService)
+                    .drainStatistics(drainStatistics)
+                    .startupMetrics(startupMetrics)
+                    .retryPolicy(retryPolicy)
+                    .failureHandler(failureHandler)
+                    .hotKeyRegistry(hotKeyRegistry)
+                    .settings(pipeline)
+                    .streamName(streamName)
+                    .catchUpController(catchUpController)
+                    .build();
+        }
+        return RecordProcessor.builder()
+                .dynamoDbService(dynamoDbService)
+                .drainStatistics(drainStatistics)
+                .startupMetrics(startupMetrics)
+                .retryPolicy(retryPolicy)
+                .failureHandler(failureHandler)
+                .hotKeyRegistry(hotKeyRegistry)
+                .rollupService(rollupService)
+                .streamName(streamName)
+                .catchUpController(catchUpController)
+                .heldShards(heldShards)
+                .build();
     }
 }
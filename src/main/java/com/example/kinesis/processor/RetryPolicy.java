@@ -0,0 +1,42 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.config.ProcessingProperties;
+import lombok.Getter;
+
+/**
+ * Bounded exponential backoff for retrying the records of a batch that failed
+ * to write.
+ */
+@Getter
+public class RetryPolicy {
+
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double multiplier;
+
+    public RetryPolicy(int maxRetries, long initialBackoffMillis, long maxBackoffMillis, double multiplier) {
+        if (maxRetries < 0 || initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis || multiplier < 1.0) {
+            throw new IllegalArgumentException("Invalid retry policy: maxRetries=" + maxRetries
+                    + ", initialBackoffMillis=" + initialBackoffMillis
+                    + ", maxBackoffMillis=" + maxBackoffMillis + ", multiplier=" + multiplier);
+        }
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.multiplier = multiplier;
+    }
+
+    public static RetryPolicy from(ProcessingProperties.Retry retry) {
+        return new RetryPolicy(retry.getMaxRetries(), retry.getInitialBackoffMillis(),
+                retry.getMaxBackoffMillis(), retry.getMultiplier());
+    }
+
+    /**
+     * Backoff before the given retry, starting at 1.
+     */
+    public long backoffMillis(int retry) {
+        double backoff = initialBackoffMillis * Math.pow(multiplier, retry - 1);
+        return (long) Math.min(backoff, maxBackoffMillis);
+    }
+}
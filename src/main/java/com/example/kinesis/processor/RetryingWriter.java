@@ -0,0 +1,153 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.service.DynamoDbService;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Writes events and retries only the ones that failed, with bounded
+ * exponential backoff. With a concurrency above one, each attempt splits the
+ * events by event id into parallel writes, so writes for one id stay ordered.
+ */
+@Slf4j
+class RetryingWriter {
+
+    /**
+     * Smallest share worth a parallel write: one full BatchWriteItem.
+     */
+    private static final int MIN_SHARE = 25;
+
+    private final DynamoDbService dynamoDbService;
+    private final RetryPolicy retryPolicy;
+    private final String streamName;
+
+    RetryingWriter(DynamoDbService dynamoDbService, RetryPolicy retryPolicy) {
+        this(dynamoDbService, retryPolicy, null);
+    }
+
+    /**
+     * @param streamName source stream in multi-stream mode, or null
+     */
+    RetryingWriter(DynamoDbService dynamoDbService, RetryPolicy retryPolicy, String streamName) {
+        this.dynamoDbService = dynamoDbService;
+        this.retryPolicy = retryPolicy;
+        this.streamName = streamName;
+    }
+
+    Result write(String shardId, List<EventRecord> events) {
+        return write(shardId, events, 1, null);
+    }
+
+    /**
+     * @param concurrency parallel writes per attempt; 1 writes on the calling thread only
+     * @param executor    runs all shares but the first, which the calling thread writes
+     */
+    Result write(String shardId, List<EventRecord> events, int concurrency, Executor executor) {
+        if (events.isEmpty()) {
+            return new Result(events, null);
+        }
+        Attempt attempt = new Attempt(shardId, executor == null ? 1 : concurrency, executor);
+        List<EventRecord> failed = attempt.write(events);
+        for (int retry = 1; !failed.isEmpty() && retry <= retryPolicy.getMaxRetries(); retry++) {
+            long backoff = retryPolicy.backoffMillis(retry);
+            log.warn("Retrying {} failed events from shard: {} in {} ms (retry {}/{})",
+                    failed.size(), shardId, backoff, retry, retryPolicy.getMaxRetries());
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            failed = attempt.write(failed);
+        }
+        if (!failed.isEmpty()) {
+            log.error("Failed to save {} of {} events from shard: {}", failed.size(), events.size(), shardId);
+        }
+        return new Result(failed, attempt.error);
+    }
+
+    /**
+     * Outcome of a write with retries.
+     */
+    @Value
+    static class Result {
+
+        /**
+         * Events that still failed after the last retry, as the instances passed in.
+         */
+        List<EventRecord> failed;
+
+        /**
+         * Last exception thrown by a write attempt, or null if failures were
+         * only reported as unprocessed items.
+         */
+        Exception error;
+    }
+
+    private class Attempt {
+
+        private final String shardId;
+        private final int concurrency;
+        private final Executor executor;
+        private volatile Exception error;
+
+        Attempt(String shardId, int concurrency, Executor executor) {
+            this.shardId = shardId;
+            this.concurrency = concurrency;
+            this.executor = executor;
+        }
+
+        List<EventRecord> write(List<EventRecord> events) {
+            int shares = Math.min(concurrency, events.size() / MIN_SHARE);
+            if (shares <= 1) {
+                return save(events);
+            }
+
+            List<List<EventRecord>> split = new ArrayList<>(shares);
+            for (int i = 0; i < shares; i++) {
+                split.add(new ArrayList<>(events.size() / shares + 1));
+            }
+            for (EventRecord event : events) {
+                int share = event.getId() == null ? 0 : Math.floorMod(event.getId().hashCode(), shares);
+                split.get(share).add(event);
+            }
+
+            List<CompletableFuture<List<EventRecord>>> pending = new ArrayList<>(shares - 1);
+            for (int i = 1; i < shares; i++) {
+                List<EventRecord> share = split.get(i);
+                try {
+                    pending.add(CompletableFuture.supplyAsync(() -> save(share), executor));
+                } catch (RejectedExecutionException e) {
+                    // The pool is shut down during application shutdown
+                    pending.add(CompletableFuture.completedFuture(save(share)));
+                }
+            }
+            // save() never throws, so neither does join()
+            List<EventRecord> failed = new ArrayList<>(save(split.get(0)));
+            for (CompletableFuture<List<EventRecord>> share : pending) {
+                failed.addAll(share.join());
+            }
+            return failed;
+        }
+
+        private List<EventRecord> save(List<EventRecord> events) {
+            try {
+                // Writes are grouped per route so batched routes share BatchWriteItem calls
+                return streamName == null
+                        ? dynamoDbService.saveEvents(events)
+                        : dynamoDbService.saveEvents(events, streamName);
+            } catch (Exception e) {
+                log.error("Error saving records from shard: {}", shardId, e);
+                error = e;
+                return events;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.kinesis.processor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer
+ * thread. Each side caches the other side's position and only re-reads it
+ * when the cached value says the ring is full (or empty), so the common case
+ * touches no shared cache line besides the slot itself.
+ */
+class SpscRingBuffer<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+
+    // Next slot to read, written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write, written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+
+    // Producer-local copy of head
+    private long cachedHead;
+    // Consumer-local copy of tail
+    private long cachedTail;
+
+    SpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30, got " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Producer side. Returns false when the ring is full.
+     */
+    boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long t = tail.get();
+        if (t - cachedHead >= buffer.length) {
+            cachedHead = head.get();
+            if (t - cachedHead >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) (t & mask)] = element;
+        // Release store publishes the slot write to the consumer
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side. Returns null when the ring is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long h = head.get();
+        if (h >= cachedTail) {
+            cachedTail = tail.get();
+            if (h >= cachedTail) {
+                return null;
+            }
+        }
+        int index = (int) (h & mask);
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    /**
+     * Consumer side. Moves up to {@code limit} elements into {@code target}.
+     *
+     * @return the number of elements moved
+     */
+    int drainTo(List<? super E> target, int limit) {
+        int moved = 0;
+        E element;
+        while (moved < limit && (element = poll()) != null) {
+            target.add(element);
+            moved++;
+        }
+        return moved;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    int size() {
+        long h = head.get();
+        return (int) Math.min(tail.get() - h, buffer.length);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.kinesis.processor;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long after JVM start the first record was persisted. This is
+ * the number the startup benchmark reports and the one that matters for
+ * autoscaled workers joining a busy stream.
+ */
+@Slf4j
+@Component
+public class StartupMetrics {
+
+    public static final String FIRST_RECORD_LOG_MARKER = "Time to first record:";
+
+    private final long jvmStartMillis;
+    private final AtomicLong timeToFirstRecordMillis = new AtomicLong(-1);
+
+    public StartupMetrics(MeterRegistry meterRegistry) {
+        this.jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        Gauge.builder("kinesis.consumer.startup.first.record", timeToFirstRecordMillis, AtomicLong::get)
+                .description("Milliseconds from JVM start until the first record was persisted, -1 until then")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public long millisSinceJvmStart() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+
+    public void recordFirstRecord() {
+        // Cheap read first so the hot path does not contend on the CAS
+        if (timeToFirstRecordMillis.get() >= 0) {
+            return;
+        }
+        long elapsed = millisSinceJvmStart();
+        if (timeToFirstRecordMillis.compareAndSet(-1, elapsed)) {
+            log.info("{} {} ms after JVM start", FIRST_RECORD_LOG_MARKER, elapsed);
+        }
+    }
+
+    public long timeToFirstRecordMillis() {
+        return timeToFirstRecordMillis.get();
+    }
+}
@@ -1,59 +1,388 @@
 package com.example.kinesis.service;
 
+import com.example.kinesis.model.EventField;
 import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.model.EventRecordSchema;
+import com.example.kinesis.model.Rollup;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
 public class DynamoDbService {
 
-    private final DynamoDbTable<EventRecord> eventTable;
+    private final DynamoDbClient dynamoDbClient;
+    private final EventRouter eventRouter;
+    private final PayloadOffloader payloadOffloader;
+    private final Map<String, DynamoDbTable<EventRecord>> tables;
+    private final UpdateExpressions updateExpressions = new UpdateExpressions();
+
+    public DynamoDbService(DynamoDbClient dynamoDbClient, EventRouter eventRouter) {
+        this(dynamoDbClient, eventRouter, PayloadOffloader.disabled());
+    }
+
+    @Autowired
+    public DynamoDbService(@Lazy DynamoDbClient dynamoDbClient, EventRouter eventRouter,
+                           PayloadOffloader payloadOffloader) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.eventRouter = eventRouter;
+        this.payloadOffloader = payloadOffloader;
 
-    public DynamoDbService(DynamoDbClient dynamoDbClient,
-                          @Value("${aws.dynamodb.table-name}") String tableName) {
         DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
                 .dynamoDbClient(dynamoDbClient)
                 .build();
-
-        this.eventTable = enhancedClient.table(tableName, TableSchema.fromBean(EventRecord.class));
+        Map<String, DynamoDbTable<EventRecord>> byName = new HashMap<>();
+        for (Route route : eventRouter.routes()) {
+            byName.computeIfAbsent(route.getTableName(),
+                    name -> enhancedClient.table(name, EventRecordSchema.TABLE_SCHEMA));
+        }
+        this.tables = Map.copyOf(byName);
     }
 
     public void saveEvent(EventRecord event) {
+        saveEvent(event, null);
+    }
+
+    /**
+     * Like {@link #saveEvent(EventRecord)}, for an event read from the given
+     * stream, so an event type without its own route goes to the stream's table.
+     *
+     * @param streamName source stream, or null in single-stream mode
+     */
+    public void saveEvent(EventRecord event, String streamName) {
+        Route route = eventRouter.route(streamName, event.getEventType());
         try {
-            eventTable.putItem(event);
-            log.info("Successfully saved event to DynamoDB: {}", event.getId());
+            putItem(route, event);
+            route.recordWritten(1);
+            log.info("Successfully saved event to DynamoDB: {} (route {})", event.getId(), route.getName());
         } catch (Exception e) {
+            route.recordFailed(1);
             log.error("Error saving event to DynamoDB: {}", event.getId(), e);
             throw new RuntimeException("Failed to save event to DynamoDB", e);
         }
     }
 
+    /**
+     * Writes events to their routed tables, honouring each route's batch size.
+     * Failures do not abort the remaining writes.
+     *
+     * @return the events that could not be written, as the same instances that were passed in
+     */
+    public List<EventRecord> saveEvents(List<EventRecord> events) {
+        return saveEvents(events, null);
+    }
+
+    /**
+     * Like {@link #saveEvents(List)}, for events read from the given stream, so
+     * event types without their own route go to the stream's table.
+     *
+     * @param streamName source stream, or null in single-stream mode
+     */
+    public List<EventRecord> saveEvents(List<EventRecord> events, String streamName) {
+        Map<Route, List<EventRecord>> byRoute = new LinkedHashMap<>();
+        for (EventRecord event : events) {
+            byRoute.computeIfAbsent(eventRouter.route(streamName, event.getEventType()), r -> new ArrayList<>())
+                    .add(event);
+        }
+
+        List<EventRecord> failed = new ArrayList<>();
+        for (Map.Entry<Route, List<EventRecord>> entry : byRoute.entrySet()) {
+            Route route = entry.getKey();
+            if (route.isBatched()) {
+                writeBatched(route, entry.getValue(), failed);
+            } else {
+                writeIndividually(route, entry.getValue(), failed);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Replaces every attribute of the event. Prefer {@link #updateFields} when
+     * only some attributes changed.
+     */
     public void updateEvent(EventRecord event) {
+        updateEvent(event, null);
+    }
+
+    /**
+     * Like {@link #updateEvent(EventRecord)}, in the table the event of the
+     * given stream was written to.
+     *
+     * @param streamName source stream, or null in single-stream mode
+     */
+    public void updateEvent(EventRecord event, String streamName) {
+        Route route = eventRouter.route(streamName, event.getEventType());
         try {
-            eventTable.updateItem(event);
+            EventRecord stored = payloadOffloader.offload(event);
+            tableFor(route).updateItem(stored);
             log.info("Successfully updated event in DynamoDB: {}", event.getId());
+            discardReplacedBlob(stored);
         } catch (Exception e) {
             log.error("Error updating event in DynamoDB: {}", event.getId(), e);
             throw new RuntimeException("Failed to update event in DynamoDB", e);
         }
     }
 
+    /**
+     * Updates only the given attributes of an existing event, leaving the rest
+     * of the item (e.g. the {@code data} payload) untouched. Fields whose value
+     * in {@code event} is null are removed. Like any UpdateItem, this creates
+     * the item if the key does not exist yet. When {@code fields} contains
+     * {@code DATA} and the new payload is stored inline, the blob of a
+     * previously offloaded payload is deleted.
+     *
+     * @param fields      the attributes to write; must not be empty
+     * @param onlyIfNewer apply the update only if the stored {@code updatedAt}
+     *                    is missing or older than {@code event.getUpdatedAt()},
+     *                    which must be set
+     * @return false if the update was skipped because the stored item is newer
+     */
+    public boolean updateFields(EventRecord event, Set<EventField> fields, boolean onlyIfNewer) {
+        return updateFields(event, fields, onlyIfNewer, null);
+    }
+
+    /**
+     * Like {@link #updateFields(EventRecord, Set, boolean)}, in the table the
+     * event of the given stream was written to.
+     *
+     * @param streamName source stream, or null in single-stream mode
+     */
+    public boolean updateFields(EventRecord event, Set<EventField> fields, boolean onlyIfNewer, String streamName) {
+        if (onlyIfNewer && event.getUpdatedAt() == null) {
+            throw new IllegalArgumentException("A conditional update needs updatedAt: " + event.getId());
+        }
+        if (fields.contains(EventField.DATA)) {
+            // The payload pointer always changes together with the payload
+            event = payloadOffloader.offload(event);
+            fields = EnumSet.copyOf(fields);
+            fields.add(EventField.DATA_REF);
+            fields.add(EventField.DATA_CHECKSUM);
+        }
+        int setMask = 0;
+        int removeMask = 0;
+        Map<String, AttributeValue> values = new HashMap<>();
+        for (EventField field : fields) {
+            AttributeValue value = field.value(event);
+            if (value == null) {
+                removeMask |= UpdateExpressions.mask(field);
+            } else {
+                setMask |= UpdateExpressions.mask(field);
+                values.put(UpdateExpressions.valuePlaceholder(field), value);
+            }
+        }
+        if (onlyIfNewer) {
+            // The version being compared is also the one written
+            setMask |= UpdateExpressions.mask(EventField.UPDATED_AT);
+            values.put(UpdateExpressions.UPDATED_AT_VALUE, EventField.UPDATED_AT.value(event));
+        }
+        UpdateExpressions.Expression expression = updateExpressions.get(setMask, removeMask, onlyIfNewer);
+
+        Route route = eventRouter.route(streamName, event.getEventType());
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(route.getTableName())
+                    .key(EventRecordSchema.key(event))
+                    .updateExpression(expression.getUpdateExpression())
+                    .conditionExpression(expression.getConditionExpression())
+                    .expressionAttributeNames(expression.getAttributeNames())
+                    .expressionAttributeValues(values.isEmpty() ? null : values)
+                    .build());
+            log.debug("Updated {} of event {} in DynamoDB", fields, event.getId());
+            if (fields.contains(EventField.DATA)) {
+                discardReplacedBlob(event);
+            }
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Skipped update of event {} - stored item is newer than {}", event.getId(), event.getUpdatedAt());
+            return false;
+        } catch (Exception e) {
+            log.error("Error updating event in DynamoDB: {}", event.getId(), e);
+            throw new RuntimeException("Failed to update event in DynamoDB", e);
+        }
+    }
+
+    /**
+     * Writes a rollup unless the stored one already has a higher count. A
+     * window rebuilt from a replay of only part of its records therefore never
+     * overwrites the complete rollup, which makes rewrites idempotent.
+     *
+     * @return false if the stored rollup was kept
+     */
+    public boolean saveRollup(String tableName, Rollup rollup) {
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(rollup.toItem())
+                    .conditionExpression("attribute_not_exists(#count) OR #count <= :count")
+                    .expressionAttributeNames(Map.of("#count", Rollup.COUNT))
+                    .expressionAttributeValues(Map.of(":count", AttributeValue.fromN(Long.toString(rollup.getCount()))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Kept stored rollup {} for shard {} - it has a higher count than {}",
+                    rollup.getRollupKey(), rollup.getShardId(), rollup.getCount());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the payload of an event read with {@link #getEvent}, loading it
+     * from the blob store if it was offloaded. The loaded payload is kept in
+     * the record, so only the first call reads the blob.
+     */
+    public String resolveData(EventRecord event) {
+        return payloadOffloader.resolve(event);
+    }
+
     public EventRecord getEvent(String id, Long timestamp) {
+        return getEvent(null, id, timestamp);
+    }
+
+    public EventRecord getEvent(String eventType, String id, Long timestamp) {
+        return getEvent(eventType, id, timestamp, null);
+    }
+
+    /**
+     * Reads an event from the table its event type, or else its stream, is
+     * routed to. An offloaded payload is not fetched here: {@code data} stays
+     * null until {@link #resolveData} is called.
+     *
+     * @param streamName source stream, or null in single-stream mode
+     */
+    public EventRecord getEvent(String eventType, String id, Long timestamp, String streamName) {
         try {
             EventRecord key = EventRecord.builder()
                     .id(id)
                     .timestamp(timestamp)
                     .build();
-            return eventTable.getItem(key);
+            return tableFor(eventRouter.route(streamName, eventType)).getItem(key);
         } catch (Exception e) {
             log.error("Error retrieving event from DynamoDB: {}", id, e);
             throw new RuntimeException("Failed to retrieve event from DynamoDB", e);
         }
     }
+
+    private void putItem(Route route, EventRecord event) {
+        dynamoDbClient.putItem(PutItemRequest.builder()
+                .tableName(route.getTableName())
+                .item(EventRecordSchema.toItem(payloadOffloader.offload(event)))
+                .build());
+    }
+
+    private void writeIndividually(Route route, List<EventRecord> events, List<EventRecord> failed) {
+        for (EventRecord event : events) {
+            try {
+                putItem(route, event);
+                route.recordWritten(1);
+            } catch (Exception e) {
+                route.recordFailed(1);
+                log.error("Error saving event to DynamoDB: {}", event.getId(), e);
+                failed.add(event);
+            }
+        }
+    }
+
+    private void writeBatched(Route route, List<EventRecord> events, List<EventRecord> failed) {
+        // BatchWriteItem rejects requests containing the same key twice, so a
+        // duplicate key closes the current chunk early.
+        Map<String, EventRecord> chunk = new LinkedHashMap<>();
+        for (EventRecord event : events) {
+            String key = EventRecordSchema.itemKey(event);
+            if (chunk.size() == route.getBatchSize() || chunk.containsKey(key)) {
+                writeChunk(route, chunk, failed);
+                chunk.clear();
+            }
+            chunk.put(key, event);
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(route, chunk, failed);
+        }
+    }
+
+    private void writeChunk(Route route, Map<String, EventRecord> chunk, List<EventRecord> failed) {
+        List<WriteRequest> writes = new ArrayList<>(chunk.size());
+        for (Iterator<EventRecord> it = chunk.values().iterator(); it.hasNext(); ) {
+            EventRecord event = it.next();
+            try {
+                writes.add(WriteRequest.builder()
+                        .putRequest(PutRequest.builder()
+                                .item(EventRecordSchema.toItem(payloadOffloader.offload(event)))
+                                .build())
+                        .build());
+            } catch (Exception e) {
+                route.recordFailed(1);
+                log.error("Error offloading payload of event {}", event.getId(), e);
+                failed.add(event);
+                it.remove();
+            }
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        route.recordBatch();
+        try {
+            BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                    .requestItems(Map.of(route.getTableName(), writes))
+                    .build());
+
+            List<WriteRequest> unprocessed = response.unprocessedItems()
+                    .getOrDefault(route.getTableName(), List.of());
+            for (WriteRequest write : unprocessed) {
+                failed.add(chunk.get(EventRecordSchema.itemKey(write.putRequest().item())));
+            }
+            route.recordWritten(chunk.size() - unprocessed.size());
+            route.recordFailed(unprocessed.size());
+            log.debug("Batch of {} events written to {} ({} unprocessed)",
+                    chunk.size(), route.getTableName(), unprocessed.size());
+        } catch (Exception e) {
+            route.recordFailed(chunk.size());
+            log.error("Error writing batch of {} events to DynamoDB table {}",
+                    chunk.size(), route.getTableName(), e);
+            failed.addAll(chunk.values());
+        }
+    }
+
+    /**
+     * Deletes the blob an item pointed to before {@code stored}, its payload
+     * now inline, replaced it. The update already succeeded, so a failed
+     * delete only leaves an unreferenced blob behind.
+     */
+    private void discardReplacedBlob(EventRecord stored) {
+        if (stored.getDataRef() != null || !payloadOffloader.isEnabled()) {
+            return;
+        }
+        try {
+            payloadOffloader.discard(stored);
+        } catch (Exception e) {
+            log.warn("Failed to delete the replaced payload blob of event {}", stored.getId(), e);
+        }
+    }
+
+    private DynamoDbTable<EventRecord> tableFor(Route route) {
+        return tables.get(route.getTableName());
+    }
 }
@@ -0,0 +1,129 @@
+package com.example.kinesis.service;
+
+import com.example.kinesis.config.RoutingProperties;
+import com.example.kinesis.config.StreamsProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the {@link Route} for an event type. The lookup table is built once
+ * at startup, so dispatch is a single hash lookup per record.
+ *
+ * <p>In multi-stream mode every configured stream also gets a route to its own
+ * table, used for the stream's event types that no event-type route maps.
+ */
+@Slf4j
+@Component
+public class EventRouter {
+
+    public static final String DEFAULT_ROUTE = "default";
+    public static final String STREAM_ROUTE_PREFIX = "stream-";
+
+    private final Route defaultRoute;
+    private final Map<String, Route> routesByEventType;
+    private final Map<String, Route> routesByStream;
+    private final List<Route> routes;
+
+    public EventRouter(RoutingProperties properties, String defaultTableName, MeterRegistry meterRegistry) {
+        this(properties, new StreamsProperties(), defaultTableName, meterRegistry);
+    }
+
+    @Autowired
+    public EventRouter(RoutingProperties properties,
+                       StreamsProperties streamsProperties,
+                       @Value("${aws.dynamodb.table-name}") String defaultTableName,
+                       MeterRegistry meterRegistry) {
+        this.defaultRoute = new Route(DEFAULT_ROUTE, defaultTableName,
+                properties.getDefaultBatchSize(), meterRegistry);
+
+        Map<String, Route> byEventType = new HashMap<>();
+        List<Route> allRoutes = new ArrayList<>();
+        allRoutes.add(defaultRoute);
+
+        for (RoutingProperties.Route config : properties.getRoutes()) {
+            if (config.getName() == null || config.getName().isBlank()) {
+                throw new IllegalStateException("Every route needs a name");
+            }
+            if (config.getTableName() == null || config.getTableName().isBlank()) {
+                throw new IllegalStateException("Route '" + config.getName() + "' has no table-name");
+            }
+            if (config.getEventTypes().isEmpty()) {
+                throw new IllegalStateException("Route '" + config.getName() + "' has no event-types");
+            }
+
+            Route route = new Route(config.getName(), config.getTableName(), config.getBatchSize(),
+                    config.isAggregate(), config.isRawWrites(), meterRegistry);
+            allRoutes.add(route);
+
+            for (String eventType : config.getEventTypes()) {
+                Route previous = byEventType.putIfAbsent(eventType, route);
+                if (previous != null) {
+                    throw new IllegalStateException("Event type '" + eventType
+                            + "' is mapped by both route '" + previous.getName()
+                            + "' and route '" + route.getName() + "'");
+                }
+            }
+            log.info("Configured {} for event types {}", route, config.getEventTypes());
+        }
+
+        Map<String, Route> byStream = new HashMap<>();
+        for (StreamsProperties.Stream stream : streamsProperties.getStreams()) {
+            String tableName = stream.getTableName() == null || stream.getTableName().isBlank()
+                    ? defaultTableName : stream.getTableName();
+            Route route = new Route(STREAM_ROUTE_PREFIX + stream.getName(), tableName, stream.getBatchSize(),
+                    meterRegistry);
+            if (byStream.putIfAbsent(stream.getName(), route) != null) {
+                throw new IllegalStateException("Stream '" + stream.getName() + "' is configured more than once");
+            }
+            allRoutes.add(route);
+            log.info("Configured {} for stream {}", route, stream.getName());
+        }
+
+        this.routesByEventType = Map.copyOf(byEventType);
+        this.routesByStream = Map.copyOf(byStream);
+        this.routes = Collections.unmodifiableList(allRoutes);
+    }
+
+    public Route route(String eventType) {
+        if (eventType == null) {
+            return defaultRoute;
+        }
+        return routesByEventType.getOrDefault(eventType, defaultRoute);
+    }
+
+    /**
+     * Route for an event read from the given stream: an event-type route wins,
+     * then the stream's own route, then the default route.
+     *
+     * @param streamName source stream, or null in single-stream mode
+     */
+    public Route route(String streamName, String eventType) {
+        if (eventType != null) {
+            Route route = routesByEventType.get(eventType);
+            if (route != null) {
+                return route;
+            }
+        }
+        if (streamName == null) {
+            return defaultRoute;
+        }
+        return routesByStream.getOrDefault(streamName, defaultRoute);
+    }
+
+    public Route defaultRoute() {
+        return defaultRoute;
+    }
+
+    public List<Route> routes() {
+        return routes;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.kinesis.service;
+
+import com.example.kinesis.blob.BlobStore;
+import com.example.kinesis.model.EventRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replaces payloads above the threshold with a pointer into a {@link BlobStore}
+ * and a SHA-256 checksum, and resolves such pointers on read.
+ */
+@Slf4j
+public class PayloadOffloader {
+
+    private static final PayloadOffloader DISABLED = new PayloadOffloader(null, Integer.MAX_VALUE);
+
+    // A UTF-8 character takes at most three bytes
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    // Enough for the events of a few batches being retried at the same time
+    private static final int MAX_UPLOADED = 1024;
+
+    private final BlobStore blobStore;
+    private final int thresholdBytes;
+
+    // Checksum of the last upload per blob key, so a retried write does not upload the same payload again
+    private final Map<String, String> uploaded = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_UPLOADED;
+        }
+    });
+
+    public PayloadOffloader(BlobStore blobStore, int thresholdBytes) {
+        this.blobStore = blobStore;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    public static PayloadOffloader disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return blobStore != null;
+    }
+
+    /**
+     * Returns the record to store: {@code event} itself if its payload stays
+     * inline, otherwise a copy whose payload was moved to the blob store.
+     * A payload that was already uploaded under the same key is not uploaded
+     * again, so retrying a failed write costs no second upload.
+     */
+    public EventRecord offload(EventRecord event) {
+        String data = event.getData();
+        // Cheap check first: most payloads are far below the threshold
+        if (blobStore == null || data == null || (long) data.length() * MAX_BYTES_PER_CHAR <= thresholdBytes) {
+            return event;
+        }
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= thresholdBytes) {
+            return event;
+        }
+
+        String key = blobKey(event);
+        String checksum = checksum(bytes);
+        if (!checksum.equals(uploaded.get(key))) {
+            blobStore.put(key, bytes);
+            uploaded.put(key, checksum);
+            log.debug("Offloaded {} byte payload of event {} to {}", bytes.length, event.getId(), key);
+        }
+        return EventRecord.builder()
+                .id(event.getId())
+                .eventType(event.getEventType())
+                .timestamp(event.getTimestamp())
+                .status(event.getStatus())
+                .updatedAt(event.getUpdatedAt())
+                .dataRef(key)
+                .dataChecksum(checksum)
+                .build();
+    }
+
+    /**
+     * Loads an offloaded payload into {@code event} and returns it. Inline
+     * payloads are returned as they are.
+     *
+     * @throws IllegalStateException if the stored payload does not match the checksum
+     */
+    public String resolve(EventRecord event) {
+        if (event.getData() != null || event.getDataRef() == null) {
+            return event.getData();
+        }
+        if (blobStore == null) {
+            throw new IllegalStateException("Event " + event.getId() + " has an offloaded payload but no blob store is configured");
+        }
+        byte[] bytes = blobStore.get(event.getDataRef());
+        if (!checksum(bytes).equals(event.getDataChecksum())) {
+            throw new IllegalStateException("Checksum mismatch for payload " + event.getDataRef());
+        }
+        String data = new String(bytes, StandardCharsets.UTF_8);
+        event.setData(data);
+        return data;
+    }
+
+    /**
+     * Deletes the blob of the item {@code event} belongs to, once the item no
+     * longer points to it. Does nothing if the offloader is disabled or the
+     * item never had a blob.
+     */
+    public void discard(EventRecord event) {
+        if (blobStore == null) {
+            return;
+        }
+        String key = blobKey(event);
+        uploaded.remove(key);
+        blobStore.delete(key);
+    }
+
+    /**
+     * One key per item, so a retried write overwrites its own blob.
+     */
+    static String blobKey(EventRecord event) {
+        return event.getId() + "/" + event.getTimestamp() + ".json";
+    }
+
+    static String checksum(byte[] bytes) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
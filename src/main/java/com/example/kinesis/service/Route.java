@@ -0,0 +1,83 @@
+package com.example.kinesis.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+
+/**
+ * A resolved routing target: the table events are written to, how they are
+ * batched and the metrics recorded for them. Instances are created once by
+ * {@link EventRouter} and shared by all shards.
+ */
+@Getter
+public class Route {
+
+    public static final int MAX_BATCH_SIZE = 25;
+
+    private final String name;
+    private final String tableName;
+    private final int batchSize;
+    private final boolean aggregate;
+    private final boolean rawWrites;
+
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+    private final Counter batchCounter;
+
+    public Route(String name, String tableName, int batchSize, MeterRegistry meterRegistry) {
+        this(name, tableName, batchSize, false, true, meterRegistry);
+    }
+
+    public Route(String name, String tableName, int batchSize, boolean aggregate, boolean rawWrites,
+                 MeterRegistry meterRegistry) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(
+                    "Batch size for route '" + name + "' must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        if (!rawWrites && !aggregate) {
+            throw new IllegalArgumentException(
+                    "Route '" + name + "' would drop its events: raw-writes can only be off when aggregate is on");
+        }
+        this.name = name;
+        this.tableName = tableName;
+        this.batchSize = batchSize;
+        this.aggregate = aggregate;
+        this.rawWrites = rawWrites;
+        this.writtenCounter = Counter.builder("kinesis.consumer.route.records")
+                .tag("route", name)
+                .tag("table", tableName)
+                .tag("outcome", "written")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("kinesis.consumer.route.records")
+                .tag("route", name)
+                .tag("table", tableName)
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        this.batchCounter = Counter.builder("kinesis.consumer.route.batches")
+                .tag("route", name)
+                .tag("table", tableName)
+                .register(meterRegistry);
+    }
+
+    public boolean isBatched() {
+        return batchSize > 1;
+    }
+
+    public void recordWritten(int count) {
+        writtenCounter.increment(count);
+    }
+
+    public void recordFailed(int count) {
+        failedCounter.increment(count);
+    }
+
+    public void recordBatch() {
+        batchCounter.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "Route(" + name + " -> " + tableName + ", batchSize=" + batchSize
+                + (aggregate ? ", aggregate" : "") + (rawWrites ? "" : ", no raw writes") + ")";
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.kinesis.service;
+
+import com.example.kinesis.model.EventField;
+import lombok.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Update and condition expressions for partial updates, built once per
+ * combination of set fields, removed fields and condition and then reused.
+ * The combination is encoded as a bitmask over {@link EventField} ordinals,
+ * so a lookup is a single array read.
+ */
+final class UpdateExpressions {
+
+    static final String UPDATED_AT_VALUE = ":" + EventField.UPDATED_AT.attributeName();
+
+    private static final EventField[] FIELDS = EventField.values();
+    private static final int FIELD_COUNT = FIELDS.length;
+
+    // attribute_not_exists also lets the first update through
+    private static final String NEWER_CONDITION =
+            "attribute_not_exists(#updatedAt) OR #updatedAt < " + UPDATED_AT_VALUE;
+
+    private final AtomicReferenceArray<Expression> cache = new AtomicReferenceArray<>(1 << (2 * FIELD_COUNT + 1));
+
+    /**
+     * @param setMask    fields assigned a value
+     * @param removeMask fields removed from the item, disjoint from {@code setMask}
+     * @param onlyIfNewer whether to add the updatedAt condition
+     */
+    Expression get(int setMask, int removeMask, boolean onlyIfNewer) {
+        if ((setMask & removeMask) != 0 || (setMask | removeMask) == 0) {
+            throw new IllegalArgumentException("An update needs at least one field and a field cannot be set and removed");
+        }
+        int index = setMask | removeMask << FIELD_COUNT | (onlyIfNewer ? 1 << (2 * FIELD_COUNT) : 0);
+        Expression expression = cache.get(index);
+        if (expression == null) {
+            // Racing threads build equal expressions, so either one may win
+            expression = build(setMask, removeMask, onlyIfNewer);
+            cache.lazySet(index, expression);
+        }
+        return expression;
+    }
+
+    static int mask(EventField field) {
+        return 1 << field.ordinal();
+    }
+
+    static String valuePlaceholder(EventField field) {
+        return ":" + field.attributeName();
+    }
+
+    private static Expression build(int setMask, int removeMask, boolean onlyIfNewer) {
+        StringBuilder update = new StringBuilder();
+        Map<String, String> names = new HashMap<>();
+        appendClause(update, names, "SET", setMask, true);
+        appendClause(update, names, "REMOVE", removeMask, false);
+        if (onlyIfNewer) {
+            names.put("#" + EventField.UPDATED_AT.attributeName(), EventField.UPDATED_AT.attributeName());
+        }
+        return new Expression(update.toString(), onlyIfNewer ? NEWER_CONDITION : null, Map.copyOf(names));
+    }
+
+    private static void appendClause(StringBuilder update, Map<String, String> names, String action, int mask,
+                                     boolean withValues) {
+        if (mask == 0) {
+            return;
+        }
+        if (update.length() > 0) {
+            update.append(' ');
+        }
+        update.append(action).append(' ');
+        boolean first = true;
+        for (EventField field : FIELDS) {
+            if ((mask & mask(field)) == 0) {
+                continue;
+            }
+            if (!first) {
+                update.append(", ");
+            }
+            first = false;
+            // Attribute names go through placeholders because data and status are reserved words
+            String name = "#" + field.attributeName();
+            names.put(name, field.attributeName());
+            update.append(name);
+            if (withValues) {
+                update.append(" = ").append(valuePlaceholder(field));
+            }
+        }
+    }
+
+    @Value
+    static class Expression {
+        String updateExpression;
+        String conditionExpression;
+        Map<String, String> attributeNames;
+    }
+}
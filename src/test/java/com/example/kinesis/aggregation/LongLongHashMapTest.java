@@ -0,0 +1,58 @@
+package com.example.kinesis.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongHashMapTest {
+
+    @Test
+    void testAddGetAndRemove() {
+        // Given
+        LongLongHashMap map = new LongLongHashMap();
+
+        // When
+        map.addTo(7L, 2L);
+        map.addTo(7L, 3L);
+        map.addTo(0L, 1L);
+
+        // Then
+        assertEquals(5L, map.get(7L));
+        assertEquals(1L, map.get(0L));
+        assertEquals(0L, map.get(8L));
+        assertEquals(5L, map.remove(7L));
+        assertEquals(0L, map.get(7L));
+        assertEquals(1, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.addTo(-1L, 1L));
+    }
+
+    @Test
+    void testMatchesHashMapUnderRandomOperations() {
+        // Given - a small key space forces collisions, growth and removals in probe runs
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, 0L), map.remove(key));
+                expected.remove(key);
+            } else {
+                expected.merge(key, 1L, Long::sum);
+                map.addTo(key, 1L);
+            }
+        }
+
+        // Then
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 500; key++) {
+            assertEquals(expected.getOrDefault(key, 0L), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.kinesis.aggregation;
+
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.config.RoutingProperties;
+import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.model.Rollup;
+import com.example.kinesis.service.DynamoDbService;
+import com.example.kinesis.service.EventRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WindowAggregatorTest {
+
+    private static final long WINDOW = 60_000L;
+
+    @Mock
+    private DynamoDbService dynamoDbService;
+
+    private RollupService rollupService;
+
+    private WindowAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        RoutingProperties.Route clicks = new RoutingProperties.Route();
+        clicks.setName("clicks");
+        clicks.setEventTypes(List.of("CLICK"));
+        clicks.setTableName("click-events");
+        clicks.setAggregate(true);
+        clicks.setRawWrites(false);
+        RoutingProperties routing = new RoutingProperties();
+        routing.setRoutes(List.of(clicks));
+
+        ProcessingProperties processing = new ProcessingProperties();
+        processing.getAggregation().setEnabled(true);
+        processing.getAggregation().setWindowMillis(WINDOW);
+        processing.getAggregation().setAllowedLatenessMillis(1_000L);
+
+        rollupService = new RollupService(dynamoDbService,
+                new EventRouter(routing, "events", new SimpleMeterRegistry()), processing, new SimpleMeterRegistry());
+        aggregator = rollupService.newAggregator("shard-1");
+    }
+
+    @Test
+    void testOnlyAggregatedRoutesAreCountedAndRawWritesFollowTheRoute() {
+        // When
+        boolean clickWritten = aggregator.add(0, record("seq-0", 1_000L), null, event("CLICK"));
+        boolean otherWritten = aggregator.add(1, record("seq-1", 2_000L), null, event("ORDER"));
+
+        // Then
+        assertFalse(clickWritten);
+        assertTrue(otherWritten);
+        assertEquals(1, aggregator.openWindowCount());
+    }
+
+    @Test
+    void testWindowIsWrittenOnceTheWatermarkPassesItsEnd() {
+        // Given
+        when(dynamoDbService.saveRollup(eq("event-rollups"), any(Rollup.class))).thenReturn(true);
+        KinesisClientRecord first = record("seq-0", 1_000L);
+        aggregator.add(0, first, null, event("CLICK"));
+        aggregator.add(1, record("seq-1", 30_000L), first, event("CLICK"));
+
+        // When - still within the allowed lateness
+        aggregator.add(2, record("seq-2", WINDOW + 500L), null, event("CLICK"));
+        aggregator.flushClosed();
+
+        // Then
+        verify(dynamoDbService, never()).saveRollup(any(), any());
+
+        // When - past the lateness
+        aggregator.add(3, record("seq-3", WINDOW + 1_000L), null, event("CLICK"));
+        aggregator.flushClosed();
+
+        // Then
+        ArgumentCaptor<Rollup> captor = ArgumentCaptor.forClass(Rollup.class);
+        verify(dynamoDbService).saveRollup(eq("event-rollups"), captor.capture());
+        Rollup rollup = captor.getValue();
+        assertEquals("CLICK#0", rollup.getRollupKey());
+        assertEquals("shard-1", rollup.getShardId());
+        assertEquals(2, rollup.getCount());
+        assertEquals(WINDOW, rollup.getWindowEnd());
+        assertEquals(1, aggregator.openWindowCount());
+    }
+
+    @Test
+    void testWallClockClosesWindowsOnlyAtTheTip() {
+        // Given - the window ends at WINDOW and the lateness is one second
+        when(dynamoDbService.saveRollup(eq("event-rollups"), any(Rollup.class))).thenReturn(true);
+        aggregator.add(0, record("seq-0", 1_000L), null, event("CLICK"));
+
+        // When - behind the tip, the clock does not count
+        aggregator.advanceAtTip(10 * WINDOW, 5_000L);
+        aggregator.flushClosed();
+
+        // Then
+        assertEquals(1, aggregator.openWindowCount());
+
+        // When - at the tip, but the lateness has not passed twice yet
+        aggregator.advanceAtTip(WINDOW + 1_500L, 0L);
+        aggregator.flushClosed();
+
+        // Then
+        assertEquals(1, aggregator.openWindowCount());
+
+        // When
+        aggregator.advanceAtTip(WINDOW + 2_000L, 0L);
+        aggregator.flushClosed();
+
+        // Then
+        verify(dynamoDbService).saveRollup(eq("event-rollups"), any(Rollup.class));
+        assertEquals(0, aggregator.openWindowCount());
+    }
+
+    @Test
+    void testCheckpointIsHeldBeforeTheFirstRecordOfTheOldestOpenWindow() {
+        // Given
+        KinesisClientRecord before = record("seq-0", 1_000L);
+        aggregator.add(0, before, null, event("ORDER"));
+
+        // When
+        aggregator.add(1, record("seq-1", 2_000L), before, event("CLICK"));
+
+        // Then
+        assertFalse(aggregator.holdsBefore(0));
+        assertTrue(aggregator.holdsBefore(1));
+        assertSame(before, aggregator.checkpointLimit());
+    }
+
+    @Test
+    void testFailedRollupWriteKeepsWindowOpen() {
+        // Given
+        when(dynamoDbService.saveRollup(any(), any(Rollup.class)))
+                .thenThrow(new RuntimeException("throttled"))
+                .thenReturn(true);
+        aggregator.add(0, record("seq-0", 1_000L), null, event("CLICK"));
+
+        // When
+        boolean firstFlush = aggregator.flushAll();
+        boolean secondFlush = aggregator.flushAll();
+
+        // Then
+        assertFalse(firstFlush);
+        assertTrue(secondFlush);
+        assertEquals(0, aggregator.openWindowCount());
+        verify(dynamoDbService, times(2)).saveRollup(any(), any(Rollup.class));
+    }
+
+    @Test
+    void testRecordsForClosedWindowsAreNotCounted() {
+        // Given
+        when(dynamoDbService.saveRollup(any(), any(Rollup.class))).thenReturn(true);
+        aggregator.add(0, record("seq-0", 1_000L), null, event("CLICK"));
+        aggregator.add(1, record("seq-1", 2 * WINDOW), null, event("CLICK"));
+        aggregator.flushClosed();
+
+        // When
+        aggregator.add(2, record("seq-2", 5_000L), null, event("CLICK"));
+
+        // Then - only the window of seq-1 is open
+        assertEquals(1, aggregator.openWindowCount());
+        assertFalse(aggregator.holdsBefore(0));
+    }
+
+    @Test
+    void testAggregatingRouteRequiresAggregationToBeEnabled() {
+        // Given
+        RoutingProperties.Route clicks = new RoutingProperties.Route();
+        clicks.setName("clicks");
+        clicks.setEventTypes(List.of("CLICK"));
+        clicks.setTableName("click-events");
+        clicks.setAggregate(true);
+        RoutingProperties routing = new RoutingProperties();
+        routing.setRoutes(List.of(clicks));
+        EventRouter router = new EventRouter(routing, "events", new SimpleMeterRegistry());
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> new RollupService(dynamoDbService, router,
+                new ProcessingProperties(), new SimpleMeterRegistry()));
+    }
+
+    private static EventRecord event(String eventType) {
+        return EventRecord.builder().id("id").eventType(eventType).timestamp(1L).build();
+    }
+
+    private static KinesisClientRecord record(String sequenceNumber, long arrivalMillis) {
+        return KinesisClientRecord.builder()
+                .data(ByteBuffer.wrap("{}".getBytes(StandardCharsets.UTF_8)))
+                .partitionKey("pk")
+                .sequenceNumber(sequenceNumber)
+                .approximateArrivalTimestamp(Instant.ofEpochMilli(arrivalMillis))
+                .build();
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.kinesis.backfill;
+
+import com.example.kinesis.config.BackfillProperties;
+import com.example.kinesis.config.RoutingProperties;
+import com.example.kinesis.service.EventRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackfillCoordinatorTest {
+
+    private static final Instant START = Instant.parse("2024-05-01T00:00:00Z");
+
+    private BackfillProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new BackfillProperties();
+        properties.setEnabled(true);
+        properties.setApplicationName("consumer-backfill");
+        properties.setStartTimestamp(START);
+    }
+
+    @Test
+    void testSameApplicationNameAsLiveConsumerIsRejected() {
+        // Given
+        properties.setApplicationName("consumer");
+
+        // When / Then
+        assertThrows(IllegalStateException.class, this::coordinator);
+    }
+
+    @Test
+    void testMissingStartTimestampIsRejected() {
+        // Given
+        properties.setStartTimestamp(null);
+
+        // When / Then
+        assertThrows(IllegalStateException.class, this::coordinator);
+    }
+
+    @Test
+    void testStopTimestampBeforeStartIsRejected() {
+        // Given
+        properties.setStopTimestamp(START.minusSeconds(60));
+
+        // When / Then
+        assertThrows(IllegalStateException.class, this::coordinator);
+    }
+
+    @Test
+    void testDisabledBackfillIsNotValidated() {
+        // Given
+        properties.setEnabled(false);
+        properties.setApplicationName(null);
+
+        // When
+        BackfillCoordinator coordinator = coordinator();
+
+        // Then
+        assertFalse(coordinator.isEnabled());
+    }
+
+    @Test
+    void testStopTimestampIsExclusive() {
+        // Given
+        properties.setStopTimestamp(START.plusSeconds(60));
+        BackfillCoordinator coordinator = coordinator();
+
+        // When / Then
+        assertFalse(coordinator.isPastStop("shard-1", record("1", START.plusSeconds(59))));
+        assertTrue(coordinator.isPastStop("shard-1", record("2", START.plusSeconds(60))));
+    }
+
+    @Test
+    void testStopSequenceNumberIsInclusiveAndPerShard() {
+        // Given - sequence numbers exceed a long, so they compare numerically
+        String stop = "49590338271490256608559692538361571095921575989136588898";
+        properties.setStopSequenceNumbers(Map.of("shardId-000000000001", stop));
+        BackfillCoordinator coordinator = coordinator();
+
+        // When / Then
+        assertFalse(coordinator.isPastStop("shardId-000000000001", record(stop, START)));
+        assertTrue(coordinator.isPastStop("shardId-000000000001",
+                record("49590338271490256608559692538361571095921575989136588899", START)));
+        assertFalse(coordinator.isPastStop("shardId-000000000002",
+                record("49590338271490256608559692538361571095921575989136588899", START)));
+    }
+
+    @Test
+    void testStopKeyThatLostItsStreamSeparatorIsRejected() {
+        // Given - "orders:shardId-000000000000" bound without brackets
+        properties.setStopSequenceNumbers(Map.of("ordersshardId-000000000000", "1"));
+
+        // When / Then
+        assertThrows(IllegalStateException.class, this::coordinator);
+    }
+
+    @Test
+    void testStreamQualifiedStopKeyIsAccepted() {
+        // Given
+        properties.setStopSequenceNumbers(Map.of("orders:shardId-000000000000", "1"));
+        BackfillCoordinator coordinator = coordinator();
+
+        // When / Then
+        assertTrue(coordinator.isPastStop("orders:shardId-000000000000", record("2", START)));
+    }
+
+    @Test
+    void testFinishedShardsAreCounted() {
+        // Given
+        BackfillCoordinator coordinator = coordinator();
+        BackfillCoordinator.ShardProgress first = coordinator.start("shard-1");
+        coordinator.start("shard-2");
+
+        // When
+        coordinator.recordWritten(first, 10);
+        coordinator.finish(first);
+
+        // Then
+        assertEquals(1, coordinator.finishedShards());
+        assertEquals(10, coordinator.shards().get("shard-1").getWritten());
+    }
+
+    @Test
+    void testCompleteOnceAllShardsStayFinishedForTheQuietPeriod() {
+        // Given
+        properties.setCompletionQuietMillis(60_000L);
+        BackfillCoordinator coordinator = coordinator();
+        long now = System.currentTimeMillis();
+        assertFalse(coordinator.isComplete(now + 120_000L), "no shard started yet");
+        BackfillCoordinator.ShardProgress first = coordinator.start("shard-1");
+        BackfillCoordinator.ShardProgress second = coordinator.start("shard-2");
+
+        // When
+        coordinator.finish(first);
+
+        // Then
+        assertFalse(coordinator.isComplete(now + 120_000L), "shard-2 still running");
+
+        // When
+        coordinator.finish(second);
+        long finishedAt = System.currentTimeMillis();
+
+        // Then
+        assertFalse(coordinator.isComplete(finishedAt + 30_000L));
+        assertTrue(coordinator.isComplete(finishedAt + 60_000L));
+
+        // When - a child shard is leased after its parent ended
+        coordinator.start("shard-3");
+
+        // Then
+        assertFalse(coordinator.isComplete(System.currentTimeMillis() + 60_000L));
+    }
+
+    private BackfillCoordinator coordinator() {
+        return new BackfillCoordinator(properties,
+                new EventRouter(new RoutingProperties(), "events", new SimpleMeterRegistry()),
+                "consumer", new SimpleMeterRegistry());
+    }
+
+    private static KinesisClientRecord record(String sequenceNumber, Instant arrival) {
+        return KinesisClientRecord.builder()
+                .sequenceNumber(sequenceNumber)
+                .approximateArrivalTimestamp(arrival)
+                .build();
+    }
+}
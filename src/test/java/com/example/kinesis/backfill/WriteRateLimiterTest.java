@@ -0,0 +1,54 @@
+package com.example.kinesis.backfill;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteRateLimiterTest {
+
+    @Test
+    void testReservationsAreSpacedAtTheRate() {
+        // Given - 100 writes per second, one every 10 ms
+        WriteRateLimiter limiter = new WriteRateLimiter(100);
+        long now = System.nanoTime();
+
+        // When
+        long first = limiter.reserve(25, now);
+        long second = limiter.reserve(25, now);
+        long third = limiter.reserve(1, now);
+
+        // Then
+        assertEquals(0L, first);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), second);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), third);
+    }
+
+    @Test
+    void testIdleTimeIsNotSavedUp() {
+        // Given
+        WriteRateLimiter limiter = new WriteRateLimiter(100);
+        long now = System.nanoTime();
+        limiter.reserve(10, now);
+
+        // When - a second passes without writes
+        long later = now + TimeUnit.SECONDS.toNanos(1);
+        long first = limiter.reserve(100, later);
+        long second = limiter.reserve(1, later);
+
+        // Then
+        assertEquals(0L, first);
+        assertEquals(TimeUnit.SECONDS.toNanos(1), second);
+    }
+
+    @Test
+    void testUnlimitedNeverWaits() {
+        // Given
+        WriteRateLimiter limiter = new WriteRateLimiter(0);
+
+        // Then
+        assertFalse(limiter.isLimited());
+        assertEquals(0L, limiter.acquire(1_000_000));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.kinesis.benchmark;
+
+import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.model.EventRecordSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the reflective bean schema with the precompiled static schema and
+ * the hand-written item mapper per record; {@link SchemaCreation} compares
+ * the cost of creating the schemas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventRecordMappingBenchmark {
+
+    private static final String JSON =
+            "{\"id\":\"bench-1\",\"eventType\":\"USER_ACTION\",\"payload\":{\"user\":\"u-1\",\"items\":[1,2,3]}}";
+
+    private TableSchema<EventRecord> beanSchema;
+    private EventRecord record;
+
+    @Setup
+    public void setUp() {
+        beanSchema = TableSchema.fromBean(EventRecord.class);
+        record = EventRecord.fromJson(JSON);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> beanSchemaItemToMap() {
+        return beanSchema.itemToMap(record, true);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> staticSchemaItemToMap() {
+        return EventRecordSchema.TABLE_SCHEMA.itemToMap(record, true);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> handWrittenToItem() {
+        return EventRecordSchema.toItem(record);
+    }
+
+    @Benchmark
+    public EventRecord fromJson() {
+        return EventRecord.fromJson(JSON);
+    }
+
+    /**
+     * Schema creation in a fork that has not touched either schema yet, so each
+     * single shot is the cold cost paid at startup. Nothing here may share the
+     * enclosing state, whose setup builds the bean schema.
+     */
+    @State(Scope.Thread)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public static class SchemaCreation {
+
+        @Benchmark
+        public TableSchema<EventRecord> beanSchemaCreation() {
+            return TableSchema.fromBean(EventRecord.class);
+        }
+
+        @Benchmark
+        public TableSchema<EventRecord> staticSchemaCreation() {
+            // Initializes EventRecordSchema, which builds TABLE_SCHEMA exactly once
+            return EventRecordSchema.TABLE_SCHEMA;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventRecordMappingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
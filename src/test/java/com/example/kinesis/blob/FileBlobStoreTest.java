@@ -0,0 +1,57 @@
+package com.example.kinesis.blob;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void testPutAndGetRoundTrip() {
+        // Given
+        FileBlobStore store = new FileBlobStore(root);
+        byte[] content = "{\"large\":true}".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        store.put("event-1/100.json", content);
+        store.put("event-1/100.json", content);
+
+        // Then
+        assertArrayEquals(content, store.get("event-1/100.json"));
+    }
+
+    @Test
+    void testMissingBlobThrows() {
+        FileBlobStore store = new FileBlobStore(root);
+
+        assertThrows(BlobNotFoundException.class, () -> store.get("missing.json"));
+    }
+
+    @Test
+    void testDeleteRemovesTheBlob() {
+        // Given
+        FileBlobStore store = new FileBlobStore(root);
+        store.put("event-2/200.json", new byte[1]);
+
+        // When
+        store.delete("event-2/200.json");
+        store.delete("event-2/200.json");
+
+        // Then
+        assertThrows(BlobNotFoundException.class, () -> store.get("event-2/200.json"));
+    }
+
+    @Test
+    void testKeysCannotEscapeTheRoot() {
+        FileBlobStore store = new FileBlobStore(root);
+
+        assertThrows(IllegalArgumentException.class, () -> store.put("../outside.json", new byte[1]));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.kinesis.config;
+
+import com.example.kinesis.hotkey.HotKeyRegistry;
+import com.example.kinesis.processor.DrainStatistics;
+import com.example.kinesis.processor.LoggingFailureHandler;
+import com.example.kinesis.processor.RecordProcessorFactory;
+import com.example.kinesis.processor.StartupMetrics;
+import com.example.kinesis.service.DynamoDbService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.kinesis.KinesisAsyncClient;
+import software.amazon.kinesis.coordinator.Scheduler;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs two workers against LocalStack and checks that shards are balanced
+ * between them and that the survivor takes over all shards after one worker
+ * stops. Start LocalStack first, then run with
+ * {@code mvn test -Dtest=LeaseRebalancingIntegrationTest -Dlocalstack.integration=true}.
+ */
+@EnabledIfSystemProperty(named = "localstack.integration", matches = "true")
+class LeaseRebalancingIntegrationTest {
+
+    private static final String ENDPOINT = System.getProperty("localstack.endpoint", "http://localhost:4566");
+    private static final int SHARD_COUNT = 4;
+
+    private KinesisAsyncClient kinesis;
+    private DynamoDbAsyncClient dynamoDb;
+    private CloudWatchAsyncClient cloudWatch;
+    private String streamName;
+    private String applicationName;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StaticCredentialsProvider credentials = StaticCredentialsProvider.create(
+                AwsBasicCredentials.create("test", "test"));
+        kinesis = KinesisAsyncClient.builder().region(Region.US_EAST_1)
+                .endpointOverride(URI.create(ENDPOINT)).credentialsProvider(credentials).build();
+        dynamoDb = DynamoDbAsyncClient.builder().region(Region.US_EAST_1)
+                .endpointOverride(URI.create(ENDPOINT)).credentialsProvider(credentials).build();
+        cloudWatch = CloudWatchAsyncClient.builder().region(Region.US_EAST_1)
+                .endpointOverride(URI.create(ENDPOINT)).credentialsProvider(credentials).build();
+
+        long suffix = System.currentTimeMillis();
+        streamName = "rebalance-stream-" + suffix;
+        applicationName = "rebalance-app-" + suffix;
+
+        kinesis.createStream(r -> r.streamName(streamName).shardCount(SHARD_COUNT)).get();
+        kinesis.waiter().waitUntilStreamExists(r -> r.streamName(streamName)).get();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        kinesis.deleteStream(r -> r.streamName(streamName)).get();
+        dynamoDb.deleteTable(r -> r.tableName(applicationName)).exceptionally(e -> null).get();
+        kinesis.close();
+        dynamoDb.close();
+        cloudWatch.close();
+    }
+
+    @Test
+    void testLeasesAreBalancedAndFailOverToSurvivingWorker() throws Exception {
+        // Given
+        LeaseProperties leaseProperties = new LeaseProperties();
+        leaseProperties.setFailoverTimeMillis(3000L);
+        leaseProperties.setMaxLeasesToStealAtOneTime(SHARD_COUNT);
+
+        RecordProcessorFactory processorFactory = new RecordProcessorFactory(
+                mock(DynamoDbService.class), new DrainStatistics(), new StartupMetrics(new SimpleMeterRegistry()),
+                new ProcessingProperties(), new LoggingFailureHandler(ProcessingProperties.FailureMode.SKIP),
+                new HotKeyRegistry(new ProcessingProperties(), new SimpleMeterRegistry()), null);
+        KinesisSchedulerFactory schedulerFactory = new KinesisSchedulerFactory(processorFactory,
+                kinesis, dynamoDb, cloudWatch, leaseProperties, new StreamsProperties(), new PollingProperties(),
+                new BackfillProperties(), streamName, applicationName);
+
+        Scheduler workerA = schedulerFactory.create("worker-a");
+        Scheduler workerB = schedulerFactory.create("worker-b");
+        start(workerA);
+        start(workerB);
+
+        try {
+            // When - both workers are running
+            Map<String, Integer> balanced = awaitLeaseOwners(Duration.ofSeconds(90),
+                    owners -> owners.getOrDefault("worker-a", 0) == SHARD_COUNT / 2
+                            && owners.getOrDefault("worker-b", 0) == SHARD_COUNT / 2);
+
+            // Then
+            assertEquals(SHARD_COUNT / 2, balanced.get("worker-a"));
+            assertEquals(SHARD_COUNT / 2, balanced.get("worker-b"));
+
+            // When - worker A disappears
+            workerA.shutdown();
+            long stoppedAt = System.currentTimeMillis();
+            Map<String, Integer> failedOver = awaitLeaseOwners(Duration.ofSeconds(60),
+                    owners -> owners.getOrDefault("worker-b", 0) == SHARD_COUNT);
+            long failoverMillis = System.currentTimeMillis() - stoppedAt;
+
+            // Then
+            assertEquals(SHARD_COUNT, failedOver.get("worker-b"));
+            // The leases expire after the failover time and the next lease taker pass,
+            // which runs every two failover times, picks them up
+            long failoverLimitMillis = 3 * leaseProperties.getFailoverTimeMillis() + 5000L;
+            assertTrue(failoverMillis <= failoverLimitMillis,
+                    "Failover took " + failoverMillis + " ms, expected at most " + failoverLimitMillis + " ms");
+        } finally {
+            workerA.shutdown();
+            workerB.shutdown();
+        }
+    }
+
+    private void start(Scheduler scheduler) {
+        Thread thread = new Thread(scheduler);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Map<String, Integer> awaitLeaseOwners(Duration timeout, Predicate<Map<String, Integer>> condition)
+            throws Exception {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        Map<String, Integer> owners = Map.of();
+        while (System.currentTimeMillis() < deadline) {
+            owners = leaseOwners();
+            if (condition.test(owners)) {
+                return owners;
+            }
+            Thread.sleep(500);
+        }
+        fail("Lease ownership did not converge within " + timeout + ", last seen: " + owners);
+        return owners;
+    }
+
+    private Map<String, Integer> leaseOwners() throws Exception {
+        Map<String, Integer> owners = new HashMap<>();
+        try {
+            for (Map<String, AttributeValue> item : dynamoDb.scan(ScanRequest.builder()
+                    .tableName(applicationName).build()).get().items()) {
+                AttributeValue owner = item.get("leaseOwner");
+                if (owner != null && owner.s() != null) {
+                    owners.merge(owner.s(), 1, Integer::sum);
+                }
+            }
+        } catch (Exception e) {
+            // Lease table not created yet
+        }
+        return owners;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.kinesis.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkerIdentityTest {
+
+    @Test
+    void testConfiguredWorkerIdTakesPrecedence() {
+        // When
+        String workerId = WorkerIdentity.resolve(" worker-1 ", "pod-abc");
+
+        // Then
+        assertEquals("worker-1", workerId);
+    }
+
+    @Test
+    void testHostnameEnvironmentIsUsedWhenNotConfigured() {
+        // When
+        String workerId = WorkerIdentity.resolve("", "pod-abc");
+
+        // Then
+        assertEquals("pod-abc", workerId);
+    }
+
+    @Test
+    void testFallsBackToLocalHostName() {
+        // When
+        String workerId = WorkerIdentity.resolve(null, null);
+
+        // Then
+        assertNotNull(workerId);
+        assertFalse(workerId.isBlank());
+    }
+
+    @Test
+    void testResolutionIsStableAcrossCalls() {
+        // Then - a restarted worker must come back with the same id
+        assertEquals(WorkerIdentity.resolve(null, "pod-abc"), WorkerIdentity.resolve(null, "pod-abc"));
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.kinesis.fake;
+
+import com.example.kinesis.model.EventRecordSchema;
+import lombok.Builder;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * In-memory {@link DynamoDbClient} for load tests. Supports {@code PutItem},
+ * {@code BatchWriteItem} and {@code GetItem}; items are keyed by
+ * {@link EventRecordSchema#itemKey(Map)} and condition expressions are not
+ * evaluated. Every call waits {@code latencyMicros}, and fails with the
+ * configured probabilities:
+ * <ul>
+ *     <li>{@code throttleRate} - a put throws {@link ProvisionedThroughputExceededException};
+ *     in a batch, each item is returned as unprocessed instead</li>
+ *     <li>{@code failureRate} - the whole call throws a 500 {@link DynamoDbException}</li>
+ * </ul>
+ * Whether a write fails is decided from the seed, the table, the item key and
+ * how often that key (or, for a whole call, that set of keys) was tried
+ * before, so the same writes fail in every run regardless of how shard
+ * threads interleave. Injected failures happen before anything is stored, so
+ * every stored write was acknowledged and {@link #writeCounts(String)}
+ * exposes duplicates. An optional {@code storeListener} sees every stored
+ * item.
+ */
+public class FakeDynamoDbClient implements DynamoDbClient {
+
+    private final long latencyMicros;
+    private final double throttleRate;
+    private final double failureRate;
+    private final long seed;
+    private final Consumer<Map<String, AttributeValue>> storeListener;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Map<String, AttributeValue>>> tables =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, AtomicInteger>> writeCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Builder
+    private FakeDynamoDbClient(long latencyMicros, double throttleRate, double failureRate, Long seed,
+                               Consumer<Map<String, AttributeValue>> storeListener) {
+        this.latencyMicros = latencyMicros;
+        this.throttleRate = throttleRate;
+        this.failureRate = failureRate;
+        this.seed = seed == null ? 42L : seed;
+        this.storeListener = storeListener;
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        String key = request.tableName() + "/" + EventRecordSchema.itemKey(request.item());
+        call(key);
+        try {
+            if (roll(throttleRate, "throttle:" + key)) {
+                throttled.incrementAndGet();
+                throw ProvisionedThroughputExceededException.builder()
+                        .message("Injected throttle on " + request.tableName())
+                        .build();
+            }
+            store(request.tableName(), request.item());
+            return PutItemResponse.builder().build();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+        StringBuilder keys = new StringBuilder();
+        request.requestItems().forEach((table, writes) -> writes.forEach(write -> keys.append(table).append('/')
+                .append(write.putRequest() == null ? "" : EventRecordSchema.itemKey(write.putRequest().item()))
+                .append(';')));
+        call(keys.toString());
+        try {
+            Map<String, List<WriteRequest>> unprocessed = new HashMap<>();
+            for (Map.Entry<String, List<WriteRequest>> entry : request.requestItems().entrySet()) {
+                for (WriteRequest write : entry.getValue()) {
+                    if (write.putRequest() == null) {
+                        throw new UnsupportedOperationException("Only put requests are supported in batches");
+                    }
+                    String key = entry.getKey() + "/" + EventRecordSchema.itemKey(write.putRequest().item());
+                    if (roll(throttleRate, "throttle:" + key)) {
+                        throttled.incrementAndGet();
+                        unprocessed.computeIfAbsent(entry.getKey(), t -> new ArrayList<>()).add(write);
+                    } else {
+                        store(entry.getKey(), write.putRequest().item());
+                    }
+                }
+            }
+            return BatchWriteItemResponse.builder().unprocessedItems(unprocessed).build();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        call(request.tableName() + "/" + EventRecordSchema.itemKey(request.key()));
+        try {
+            Map<String, AttributeValue> item =
+                    table(request.tableName()).get(EventRecordSchema.itemKey(request.key()));
+            return GetItemResponse.builder().item(item).build();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Items of a table by item key.
+     */
+    public Map<String, Map<String, AttributeValue>> items(String tableName) {
+        return Map.copyOf(table(tableName));
+    }
+
+    /**
+     * Number of acknowledged writes per item key; any value above 1 is a
+     * duplicate write.
+     */
+    public Map<String, Integer> writeCounts(String tableName) {
+        Map<String, Integer> counts = new HashMap<>();
+        writeCounts.getOrDefault(tableName, new ConcurrentHashMap<>())
+                .forEach((key, count) -> counts.put(key, count.get()));
+        return counts;
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long throttled() {
+        return throttled.get();
+    }
+
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Most calls that were in progress at the same time.
+     */
+    public int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Starts a call: waits for the latency and injects failures. A call that
+     * returns normally is in flight until the caller decrements {@link #inFlight}.
+     *
+     * @param keys identifies the items of the call for the failure decision
+     */
+    private void call(String keys) {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        if (latencyMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        }
+        if (roll(failureRate, "failure:" + keys)) {
+            inFlight.decrementAndGet();
+            failed.incrementAndGet();
+            throw DynamoDbException.builder()
+                    .statusCode(500)
+                    .message("Injected internal server error")
+                    .build();
+        }
+    }
+
+    /**
+     * Decides the next attempt of {@code key} from the seed, the key and the
+     * number of earlier attempts, so retries of a key get fresh decisions.
+     */
+    private boolean roll(double rate, String key) {
+        if (rate <= 0) {
+            return false;
+        }
+        int attempt = attempts.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+        long mixed = seed ^ ((long) key.hashCode() << 32) ^ attempt;
+        return new SplittableRandom(mixed).nextDouble() < rate;
+    }
+
+    private void store(String tableName, Map<String, AttributeValue> item) {
+        String key = EventRecordSchema.itemKey(item);
+        table(tableName).put(key, Map.copyOf(item));
+        if (storeListener != null) {
+            storeListener.accept(item);
+        }
+        writeCounts.computeIfAbsent(tableName, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new AtomicInteger())
+                .incrementAndGet();
+    }
+
+    private ConcurrentMap<String, Map<String, AttributeValue>> table(String tableName) {
+        return tables.computeIfAbsent(tableName, t -> new ConcurrentHashMap<>());
+    }
+}
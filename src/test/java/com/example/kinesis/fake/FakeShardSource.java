@@ -0,0 +1,140 @@
+package com.example.kinesis.fake;
+
+import software.amazon.kinesis.lifecycle.events.InitializationInput;
+import software.amazon.kinesis.lifecycle.events.ProcessRecordsInput;
+import software.amazon.kinesis.lifecycle.events.ShardEndedInput;
+import software.amazon.kinesis.processor.RecordProcessorCheckpointer;
+import software.amazon.kinesis.processor.ShardRecordProcessor;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.LongFunction;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * In-memory shard that drives a {@link ShardRecordProcessor} the way the KCL
+ * does: initialize, consecutive {@code processRecords} calls with a fixed
+ * batch size, then shard end. Sequence numbers are the zero-padded record
+ * index, arrival timestamps are one millisecond apart from a fixed instant,
+ * so two sources built alike deliver identical records, and every
+ * checkpoint is reported as the index of the last record it covers.
+ * {@code millisBehindLatest} is reported as a fixed lag per record still to
+ * be delivered, so a shard starts behind and catches up.
+ */
+public class FakeShardSource {
+
+    private static final Instant FIRST_ARRIVAL = Instant.parse("2024-05-01T00:00:00Z");
+
+    private final String shardId;
+    private final List<KinesisClientRecord> records;
+    private final int batchSize;
+    private final IntConsumer checkpointListener;
+    private final RecordProcessorCheckpointer checkpointer;
+
+    private long lagMillisPerRecord;
+    private int batchEnd;
+    private volatile int checkpointedIndex = -1;
+
+    /**
+     * @param payload            record payload for a record index
+     * @param checkpointListener called with the covered index on every checkpoint
+     */
+    public FakeShardSource(String shardId, int recordCount, int batchSize, LongFunction<String> payload,
+                           IntConsumer checkpointListener) {
+        this.shardId = shardId;
+        this.batchSize = batchSize;
+        this.checkpointListener = checkpointListener;
+        this.records = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            records.add(KinesisClientRecord.builder()
+                    .data(ByteBuffer.wrap(payload.apply(i).getBytes(StandardCharsets.UTF_8)))
+                    .partitionKey(shardId + "-" + (i % 64))
+                    .sequenceNumber(sequenceNumber(i))
+                    .approximateArrivalTimestamp(arrivalTimestamp(i))
+                    .build());
+        }
+        this.checkpointer = mock(RecordProcessorCheckpointer.class);
+        try {
+            doAnswer(invocation -> {
+                checkpointed(batchEnd - 1);
+                return null;
+            }).when(checkpointer).checkpoint();
+            doAnswer(invocation -> {
+                checkpointed(Integer.parseInt(invocation.getArgument(0)));
+                return null;
+            }).when(checkpointer).checkpoint(anyString(), anyLong());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reports {@code millisBehindLatest} as this many milliseconds per record
+     * that has not been delivered yet.
+     */
+    public FakeShardSource lagMillisPerRecord(long lagMillisPerRecord) {
+        this.lagMillisPerRecord = lagMillisPerRecord;
+        return this;
+    }
+
+    /**
+     * Delivers every record to the processor and ends the shard.
+     */
+    public void run(ShardRecordProcessor processor) {
+        processor.initialize(InitializationInput.builder().shardId(shardId).build());
+        for (int start = 0; start < records.size(); start += batchSize) {
+            batchEnd = Math.min(start + batchSize, records.size());
+            processor.processRecords(ProcessRecordsInput.builder()
+                    .records(records.subList(start, batchEnd))
+                    .checkpointer(checkpointer)
+                    .millisBehindLatest((records.size() - batchEnd) * lagMillisPerRecord)
+                    .build());
+        }
+        processor.shardEnded(ShardEndedInput.builder().checkpointer(checkpointer).build());
+    }
+
+    public String shardId() {
+        return shardId;
+    }
+
+    public int recordCount() {
+        return records.size();
+    }
+
+    /**
+     * Index of the last record covered by a checkpoint, or -1.
+     */
+    public int checkpointedIndex() {
+        return checkpointedIndex;
+    }
+
+    public boolean isFullyCheckpointed() {
+        return checkpointedIndex == records.size() - 1;
+    }
+
+    public Instant arrivalTimestamp(int index) {
+        return FIRST_ARRIVAL.plusMillis(index);
+    }
+
+    public static String sequenceNumber(long index) {
+        return String.format("%020d", index);
+    }
+
+    private void checkpointed(int index) {
+        if (index < checkpointedIndex) {
+            throw new IllegalStateException("Checkpoint moved back from " + checkpointedIndex + " to " + index
+                    + " on " + shardId);
+        }
+        checkpointedIndex = index;
+        checkpointListener.accept(index);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.kinesis.hotkey;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowedTopKTest {
+
+    @Test
+    void testHeavyHittersAreFoundWithBoundedMemory() {
+        // Given - far more distinct keys than counters
+        WindowedTopK topK = new WindowedTopK(8, 60000L, 6);
+        long now = 1_000_000L;
+        for (int i = 0; i < 10000; i++) {
+            topK.offer("cold-" + i, now);
+            if (i % 2 == 0) {
+                topK.offer("hot-a", now);
+            }
+            if (i % 3 == 0) {
+                topK.offer("hot-b", now);
+            }
+        }
+
+        // When
+        List<HotKey> top = topK.top(2, now);
+
+        // Then
+        assertEquals(2, top.size());
+        assertEquals("hot-a", top.get(0).getKey());
+        assertEquals("hot-b", top.get(1).getKey());
+        // Space-Saving never underestimates, and count - maxError never overestimates
+        assertTrue(top.get(0).getCount() >= 5000);
+        assertTrue(top.get(0).getCount() - top.get(0).getMaxError() <= 5000);
+    }
+
+    @Test
+    void testCountsExpireWithTheWindow() {
+        // Given
+        WindowedTopK topK = new WindowedTopK(8, 60000L, 6);
+        topK.offer("old", 1_000_000L);
+
+        // When - more than a full window later
+        topK.offer("new", 1_000_000L + 70000L);
+        List<HotKey> top = topK.top(10, 1_000_000L + 70000L);
+
+        // Then
+        assertEquals(1, top.size());
+        assertEquals("new", top.get(0).getKey());
+        assertEquals(1.0, top.get(0).getShare());
+    }
+
+    @Test
+    void testShareIsRelativeToWindowTotal() {
+        // Given
+        WindowedTopK topK = new WindowedTopK(8, 60000L, 6);
+        long now = 1_000_000L;
+        topK.offer("a", now);
+        topK.offer("a", now);
+        topK.offer("a", now);
+        topK.offer("b", now);
+
+        // When
+        List<HotKey> top = topK.top(1, now);
+
+        // Then
+        assertEquals("a", top.get(0).getKey());
+        assertEquals(0.75, top.get(0).getShare(), 1e-9);
+        assertEquals(4, topK.total(now));
+    }
+
+    @Test
+    void testInvalidWindowIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new WindowedTopK(8, 3L, 6));
+    }
+}
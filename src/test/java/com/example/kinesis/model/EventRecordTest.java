@@ -111,6 +111,25 @@ class EventRecordTest {
         assertEquals("PROCESSED", record.getStatus());
     }
 
+    @Test
+    void testFromJsonWithFixedKeyIsRepeatable() {
+        // Given
+        String withoutId = "{\"eventType\":\"NO_ID_EVENT\"}";
+        String invalid = "not json {{";
+
+        // When
+        EventRecord first = EventRecord.fromJson(withoutId, "shard-1:42", 1_000L);
+        EventRecord second = EventRecord.fromJson(withoutId, "shard-1:42", 1_000L);
+        EventRecord unparsed = EventRecord.fromJson(invalid, "shard-1:43", 2_000L);
+
+        // Then
+        assertEquals(first, second);
+        assertEquals("shard-1:42", first.getId());
+        assertEquals(1_000L, first.getTimestamp());
+        assertEquals("shard-1:43", unparsed.getId());
+        assertEquals(2_000L, unparsed.getTimestamp());
+    }
+
     @Test
     void testEventRecordEquality() {
         // Given
@@ -0,0 +1,186 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.backfill.BackfillCoordinator;
+import com.example.kinesis.config.BackfillProperties;
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.config.RoutingProperties;
+import com.example.kinesis.fake.FakeDynamoDbClient;
+import com.example.kinesis.fake.FakeShardSource;
+import com.example.kinesis.service.DynamoDbService;
+import com.example.kinesis.service.EventRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackfillRecordProcessorTest {
+
+    private static final String SHARD_ID = "shardId-000000000000";
+
+    private FakeDynamoDbClient dynamoDb;
+    private BackfillProperties properties;
+    private RoutingProperties routing;
+    private SimpleMeterRegistry meterRegistry;
+    private List<Integer> checkpoints;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDb = FakeDynamoDbClient.builder().throttleRate(0.05).build();
+        properties = new BackfillProperties();
+        properties.setEnabled(true);
+        properties.setApplicationName("consumer-backfill");
+        properties.setStartTimestamp(Instant.parse("2024-05-01T00:00:00Z"));
+        properties.setMaxWritesPerSecond(0);
+        routing = new RoutingProperties();
+        routing.setDefaultBatchSize(25);
+        meterRegistry = new SimpleMeterRegistry();
+        checkpoints = new CopyOnWriteArrayList<>();
+    }
+
+    @Test
+    void testBackfillStopsAtStopTimestamp() {
+        // Given
+        FakeShardSource source = source(1_000, 100, "LOAD");
+        properties.setStopTimestamp(source.arrivalTimestamp(650));
+        BackfillCoordinator coordinator = coordinator();
+
+        // When
+        source.run(processor(coordinator));
+
+        // Then
+        BackfillCoordinator.ShardProgress progress = coordinator.shards().get(SHARD_ID);
+        assertEquals(650, dynamoDb.items("events").size());
+        assertEquals(650, progress.getWritten());
+        assertTrue(progress.isFinished());
+        assertEquals(FakeShardSource.sequenceNumber(649), progress.getLastSequenceNumber());
+        assertTrue(checkpoints.contains(649));
+        assertTrue(checkpoints.stream().noneMatch(index -> index > 649 && index < 999),
+                "no checkpoint past the stop target before shard end: " + checkpoints);
+        assertEquals(650.0, meterRegistry.get("kinesis.backfill.records").tag("outcome", "written").counter().count());
+    }
+
+    @Test
+    void testBackfillStopsAtStopSequenceNumber() {
+        // Given
+        FakeShardSource source = source(500, 100, "LOAD");
+        properties.setStopSequenceNumbers(Map.of(SHARD_ID, FakeShardSource.sequenceNumber(299)));
+        BackfillCoordinator coordinator = coordinator();
+
+        // When
+        source.run(processor(coordinator));
+
+        // Then
+        assertEquals(300, dynamoDb.items("events").size());
+        assertEquals(FakeShardSource.sequenceNumber(299), coordinator.shards().get(SHARD_ID).getLastSequenceNumber());
+        assertEquals(1, coordinator.finishedShards());
+    }
+
+    @Test
+    void testEventsOfRoutesWithoutRawWritesAreSkipped() {
+        // Given
+        RoutingProperties.Route clicks = new RoutingProperties.Route();
+        clicks.setName("clicks");
+        clicks.setEventTypes(List.of("CLICK"));
+        clicks.setTableName("click-events");
+        clicks.setAggregate(true);
+        clicks.setRawWrites(false);
+        routing.setRoutes(List.of(clicks));
+        FakeShardSource source = source(200, 50, "CLICK");
+        BackfillCoordinator coordinator = coordinator();
+
+        // When
+        source.run(processor(coordinator));
+
+        // Then
+        BackfillCoordinator.ShardProgress progress = coordinator.shards().get(SHARD_ID);
+        assertTrue(dynamoDb.items("click-events").isEmpty());
+        assertEquals(100, dynamoDb.items("events").size());
+        assertEquals(100, progress.getSkipped());
+        assertTrue(source.isFullyCheckpointed());
+    }
+
+    @Test
+    void testRerunOverwritesItemsOfThePreviousRun() {
+        // Given - every tenth payload has no id
+        LongFunction<String> payload = i -> i % 10 == 0
+                ? "{\"eventType\":\"LOAD\"}"
+                : "{\"id\":\"event-" + i + "\",\"eventType\":\"LOAD\"}";
+        FakeShardSource firstRun = new FakeShardSource(SHARD_ID, 300, 100, payload, checkpoints::add);
+        FakeShardSource secondRun = new FakeShardSource(SHARD_ID, 300, 100, payload, checkpoints::add);
+        firstRun.run(processor(coordinator()));
+        int itemsAfterFirstRun = dynamoDb.items("events").size();
+
+        // When
+        secondRun.run(processor(coordinator()));
+
+        // Then
+        assertEquals(300, itemsAfterFirstRun);
+        assertEquals(itemsAfterFirstRun, dynamoDb.items("events").size());
+        dynamoDb.writeCounts("events").forEach((key, count) -> assertEquals(2, count, "writes of " + key));
+    }
+
+    @Test
+    void testRateLimitSpreadsOneLargeBatch() {
+        // Given - one batch of 100 records at 1000 writes per second, written in four chunks
+        dynamoDb = FakeDynamoDbClient.builder().build();
+        properties.setMaxWritesPerSecond(1_000);
+        FakeShardSource source = source(100, 100, "LOAD");
+
+        // When
+        long start = System.nanoTime();
+        source.run(processor(coordinator()));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then - the last chunk waits for the 75 writes before it
+        assertEquals(100, dynamoDb.items("events").size());
+        assertTrue(elapsedMillis >= 70, "batch written in " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testFailedRecordStopsShardInBlockMode() {
+        // Given
+        dynamoDb = FakeDynamoDbClient.builder().failureRate(1.0).build();
+        FakeShardSource source = source(100, 50, "LOAD");
+        BackfillCoordinator coordinator = coordinator();
+
+        // When
+        source.run(new BackfillRecordProcessor(service(), new RetryPolicy(1, 0L, 0L, 2.0),
+                new LoggingFailureHandler(ProcessingProperties.FailureMode.BLOCK), coordinator, null));
+
+        // Then
+        assertTrue(checkpoints.isEmpty());
+        assertEquals(50, coordinator.shards().get(SHARD_ID).getFailed());
+        assertFalse(coordinator.shards().get(SHARD_ID).isFinished());
+    }
+
+    /**
+     * Every other record has {@code otherEventType}, the rest are LOAD events.
+     */
+    private FakeShardSource source(int records, int batchSize, String otherEventType) {
+        return new FakeShardSource(SHARD_ID, records, batchSize,
+                i -> "{\"id\":\"event-" + i + "\",\"eventType\":\"" + (i % 2 == 0 ? "LOAD" : otherEventType) + "\"}",
+                checkpoints::add);
+    }
+
+    private BackfillCoordinator coordinator() {
+        return new BackfillCoordinator(properties, new EventRouter(routing, "events", meterRegistry),
+                "consumer", meterRegistry);
+    }
+
+    private BackfillRecordProcessor processor(BackfillCoordinator coordinator) {
+        return new BackfillRecordProcessor(service(), new RetryPolicy(10, 0L, 0L, 2.0),
+                new LoggingFailureHandler(ProcessingProperties.FailureMode.BLOCK), coordinator, null);
+    }
+
+    private DynamoDbService service() {
+        return new DynamoDbService(dynamoDb, new EventRouter(routing, "events", new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.config.ProcessingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatchUpControllerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProcessingProperties properties;
+    private CatchUpController controller;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new ProcessingProperties();
+        properties.getCatchUp().setEnabled(true);
+        properties.getCatchUp().setEnterLagMillis(60000L);
+        properties.getCatchUp().setExitLagMillis(10000L);
+        properties.getCatchUp().setWriteConcurrency(4);
+        controller = new CatchUpController(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        controller.shutdown();
+    }
+
+    @Test
+    void testModeSwitchesWithHysteresis() {
+        // When / Then
+        assertEquals(CatchUpController.Mode.TAIL, controller.update("shard-1", 30000L));
+        assertEquals(CatchUpController.Mode.CATCH_UP, controller.update("shard-1", 7200000L));
+        assertEquals(CatchUpController.Mode.CATCH_UP, controller.update("shard-1", 30000L));
+        assertEquals(CatchUpController.Mode.CATCH_UP, controller.update("shard-1", null));
+        assertEquals(CatchUpController.Mode.TAIL, controller.update("shard-1", 10000L));
+        assertEquals(CatchUpController.Mode.TAIL, controller.update("shard-1", 59999L));
+    }
+
+    @Test
+    void testWriteConcurrencyFollowsMode() {
+        // Then
+        assertEquals(4, controller.writeConcurrency(CatchUpController.Mode.CATCH_UP));
+        assertEquals(1, controller.writeConcurrency(CatchUpController.Mode.TAIL));
+        assertNotNull(controller.writeExecutor());
+    }
+
+    @Test
+    void testGaugesReflectShards() {
+        // Given
+        controller.update("shard-1", 120000L);
+        controller.update("shard-2", 500L);
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("kinesis.consumer.mode").gauge().value());
+        assertEquals(1.0, meterRegistry.get("kinesis.consumer.catchup.shards").gauge().value());
+        assertEquals(120000.0, meterRegistry.get("kinesis.consumer.millis.behind.latest").gauge().value());
+
+        // When
+        controller.unregister("shard-1");
+
+        // Then
+        assertEquals(0.0, meterRegistry.get("kinesis.consumer.mode").gauge().value());
+        assertEquals(500.0, meterRegistry.get("kinesis.consumer.millis.behind.latest").gauge().value());
+    }
+
+    @Test
+    void testDisabledControllerStaysInTailMode() {
+        // Given
+        ProcessingProperties disabled = new ProcessingProperties();
+        CatchUpController tailOnly = new CatchUpController(disabled, new SimpleMeterRegistry());
+
+        // When
+        CatchUpController.Mode mode = tailOnly.update("shard-1", 7200000L);
+
+        // Then
+        assertEquals(CatchUpController.Mode.TAIL, mode);
+        assertEquals(1, tailOnly.writeConcurrency(CatchUpController.Mode.CATCH_UP));
+        assertNull(tailOnly.writeExecutor());
+        assertEquals(7200000L, tailOnly.maxMillisBehindLatest());
+    }
+
+    @Test
+    void testExitLagAboveEnterLagIsRejected() {
+        // Given
+        properties.getCatchUp().setExitLagMillis(120000L);
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> new CatchUpController(properties, new SimpleMeterRegistry()));
+    }
+}
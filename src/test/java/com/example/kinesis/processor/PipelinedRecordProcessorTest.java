@@ -0,0 +1,187 @@
+package com.example.kinesis.processor;
+
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.hotkey.HotKeyRegistry;
+import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.service.DynamoDbService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.kinesis.lifecycle.events.*;
+import software.amazon.kinesis.processor.RecordProcessorCheckpointer;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PipelinedRecordProcessorTest {
+
+    @Mock
+    private DynamoDbService dynamoDbService;
+
+    @Mock
+    private InitializationInput initializationInput;
+
+    @Mock
+    private ProcessRecordsInput processRecordsInput;
+
+    @Mock
+    private RecordProcessorCheckpointer checkpointer;
+
+    @Mock
+    private ShardEndedInput shardEndedInput;
+
+    @Mock
+    private ShutdownRequestedInput shutdownRequestedInput;
+
+    @Mock
+    private LeaseLostInput leaseLostInput;
+
+    private DrainStatistics drainStatistics;
+
+    private List<KinesisClientRecord> records;
+
+    @BeforeEach
+    void setUp() {
+        drainStatistics = new DrainStatistics();
+        when(initializationInput.shardId()).thenReturn("shardId-000000000001");
+        records = Arrays.asList(
+                createKinesisRecord("{\"id\":\"1\",\"eventType\":\"A\"}", "pk1", "seq-001"),
+                createKinesisRecord("{\"id\":\"2\",\"eventType\":\"A\"}", "pk2", "seq-002"),
+                createKinesisRecord("{\"id\":\"3\",\"eventType\":\"A\"}", "pk3", "seq-003")
+        );
+        lenient().when(processRecordsInput.records()).thenReturn(records);
+        lenient().when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+    }
+
+    @Test
+    void testRecordsAreWrittenAndCheckpointedAtShutdown() throws Exception {
+        // Given
+        PipelinedRecordProcessor processor = createProcessor(ProcessingProperties.FailureMode.SKIP);
+        when(shutdownRequestedInput.checkpointer()).thenReturn(checkpointer);
+        processor.initialize(initializationInput);
+
+        // When
+        processor.processRecords(processRecordsInput);
+        processor.shutdownRequested(shutdownRequestedInput);
+
+        // Then
+        ArgumentCaptor<List<EventRecord>> eventCaptor = ArgumentCaptor.forClass(List.class);
+        verify(dynamoDbService, atLeastOnce()).saveEvents(eventCaptor.capture());
+        List<String> written = eventCaptor.getAllValues().stream()
+                .flatMap(List::stream)
+                .map(EventRecord::getId)
+                .collect(Collectors.toList());
+        assertEquals(List.of("1", "2", "3"), written);
+        verify(checkpointer).checkpoint("seq-003", 0L);
+        assertEquals(1, drainStatistics.shardsDrained());
+    }
+
+    @Test
+    void testFailedRecordHoldsCheckpointInBlockMode() throws Exception {
+        // Given - event "2" is never persisted
+        PipelinedRecordProcessor processor = createProcessor(ProcessingProperties.FailureMode.BLOCK);
+        when(shardEndedInput.checkpointer()).thenReturn(checkpointer);
+        when(dynamoDbService.saveEvents(anyList()))
+                .thenAnswer(invocation -> eventsWithId(invocation.getArgument(0), "2"));
+        processor.initialize(initializationInput);
+
+        // When
+        processor.processRecords(processRecordsInput);
+        processor.shardEnded(shardEndedInput);
+
+        // Then - only the record before it is checkpointed, and the shard end is not
+        verify(checkpointer).checkpoint("seq-001", 0L);
+        verify(checkpointer, never()).checkpoint("seq-003", 0L);
+        verify(checkpointer, never()).checkpoint();
+    }
+
+    @Test
+    void testShardEndedCheckpointsAfterDraining() throws Exception {
+        // Given
+        PipelinedRecordProcessor processor = createProcessor(ProcessingProperties.FailureMode.SKIP);
+        when(shardEndedInput.checkpointer()).thenReturn(checkpointer);
+        processor.initialize(initializationInput);
+
+        // When
+        processor.processRecords(processRecordsInput);
+        processor.shardEnded(shardEndedInput);
+
+        // Then
+        verify(dynamoDbService, atLeastOnce()).saveEvents(anyList());
+        verify(checkpointer).checkpoint();
+    }
+
+    @Test
+    void testParkedStagesWakeUpForNewRecords() throws Exception {
+        // Given - the stages have been idle long enough to park
+        PipelinedRecordProcessor processor = createProcessor(ProcessingProperties.FailureMode.SKIP);
+        when(shardEndedInput.checkpointer()).thenReturn(checkpointer);
+        processor.initialize(initializationInput);
+        Thread.sleep(200);
+
+        // When
+        processor.processRecords(processRecordsInput);
+
+        // Then
+        verify(dynamoDbService, timeout(1000).atLeastOnce()).saveEvents(anyList());
+        processor.shardEnded(shardEndedInput);
+        verify(checkpointer).checkpoint();
+    }
+
+    @Test
+    void testLeaseLostStopsWithoutCheckpointing() throws Exception {
+        // Given
+        PipelinedRecordProcessor processor = createProcessor(ProcessingProperties.FailureMode.SKIP);
+        processor.initialize(initializationInput);
+
+        // When
+        processor.leaseLost(leaseLostInput);
+
+        // Then
+        verify(checkpointer, never()).checkpoint();
+        verify(checkpointer, never()).checkpoint(anyString(), anyLong());
+    }
+
+    private PipelinedRecordProcessor createProcessor(ProcessingProperties.FailureMode failureMode) {
+        ProcessingProperties properties = new ProcessingProperties();
+        properties.getPipeline().setEnabled(true);
+        properties.getPipeline().setRingCapacity(2);
+        return PipelinedRecordProcessor.builder()
+                .dynamoDbService(dynamoDbService)
+                .drainStatistics(drainStatistics)
+                .startupMetrics(new StartupMetrics(new SimpleMeterRegistry()))
+                .retryPolicy(new RetryPolicy(1, 0L, 0L, 2.0))
+                .failureHandler(new LoggingFailureHandler(failureMode))
+                .hotKeyRegistry(new HotKeyRegistry(properties, new SimpleMeterRegistry()))
+                .settings(properties.getPipeline())
+                .build();
+    }
+
+    private static List<EventRecord> eventsWithId(List<EventRecord> events, String id) {
+        return events.stream().filter(event -> id.equals(event.getId())).collect(Collectors.toList());
+    }
+
+    private KinesisClientRecord createKinesisRecord(String data, String partitionKey, String sequenceNumber) {
+        return KinesisClientRecord.builder()
+                .data(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)))
+                .partitionKey(partitionKey)
+                .sequenceNumber(sequenceNumber)
+                .approximateArrivalTimestamp(java.time.Instant.now())
+                .build();
+    }
+}
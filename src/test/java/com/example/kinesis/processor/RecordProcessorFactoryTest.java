@@ -1,14 +1,31 @@
 package com.example.kinesis.processor;
 
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.config.StreamsProperties;
+import com.example.kinesis.hotkey.HotKeyRegistry;
 import com.example.kinesis.service.DynamoDbService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.kinesis.common.StreamIdentifier;
+import software.amazon.kinesis.lifecycle.events.InitializationInput;
+import software.amazon.kinesis.lifecycle.events.ProcessRecordsInput;
+import software.amazon.kinesis.processor.RecordProcessorCheckpointer;
 import software.amazon.kinesis.processor.ShardRecordProcessor;
+import software.amazon.kinesis.retrieval.KinesisClientRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class RecordProcessorFactoryTest {
@@ -20,7 +37,10 @@ class RecordProcessorFactoryTest {
 
     @BeforeEach
     void setUp() {
-        factory = new RecordProcessorFactory(dynamoDbService);
+        factory = new RecordProcessorFactory(dynamoDbService, new DrainStatistics(),
+                new StartupMetrics(new SimpleMeterRegistry()), new ProcessingProperties(),
+                new LoggingFailureHandler(ProcessingProperties.FailureMode.SKIP),
+                new HotKeyRegistry(new ProcessingProperties(), new SimpleMeterRegistry()), null);
     }
 
     @Test
@@ -33,6 +53,83 @@ class RecordProcessorFactoryTest {
         assertTrue(processor instanceof RecordProcessor);
     }
 
+    @Test
+    void testPipelinedProcessorCreationWhenEnabled() {
+        // Given
+        ProcessingProperties properties = new ProcessingProperties();
+        properties.getPipeline().setEnabled(true);
+        RecordProcessorFactory pipelinedFactory = new RecordProcessorFactory(dynamoDbService, new DrainStatistics(),
+                new StartupMetrics(new SimpleMeterRegistry()), properties,
+                new LoggingFailureHandler(ProcessingProperties.FailureMode.SKIP),
+                new HotKeyRegistry(properties, new SimpleMeterRegistry()), null);
+
+        // When
+        ShardRecordProcessor processor = pipelinedFactory.shardRecordProcessor();
+
+        // Then
+        assertTrue(processor instanceof PipelinedRecordProcessor);
+    }
+
+    @Test
+    void testMultiStreamProcessorWritesWithStreamName() {
+        // Given
+        HotKeyRegistry hotKeyRegistry = new HotKeyRegistry(new ProcessingProperties(), new SimpleMeterRegistry());
+        RecordProcessorFactory multiStreamFactory = new RecordProcessorFactory(dynamoDbService, new DrainStatistics(),
+                new StartupMetrics(new SimpleMeterRegistry()), new ProcessingProperties(),
+                new LoggingFailureHandler(ProcessingProperties.FailureMode.SKIP), hotKeyRegistry, null);
+        KinesisClientRecord record = KinesisClientRecord.builder()
+                .data(ByteBuffer.wrap("{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8)))
+                .partitionKey("key-1")
+                .sequenceNumber("seq-001")
+                .build();
+
+        // When
+        ShardRecordProcessor processor = multiStreamFactory.shardRecordProcessor(
+                StreamIdentifier.multiStreamInstance("123456789012:orders:1700000000"));
+        processor.initialize(InitializationInput.builder().shardId("shardId-000000000000").build());
+        processor.processRecords(ProcessRecordsInput.builder()
+                .records(List.of(record))
+                .checkpointer(mock(RecordProcessorCheckpointer.class))
+                .build());
+
+        // Then
+        verify(dynamoDbService).saveEvents(anyList(), eq("orders"));
+        assertTrue(hotKeyRegistry.trackers().containsKey("orders:shardId-000000000000"));
+    }
+
+    @Test
+    void testStreamOverridesFailureModeAndRetries() throws Exception {
+        // Given - "orders" holds failed records without retrying, "clicks" uses the global SKIP mode
+        StreamsProperties streams = new StreamsProperties();
+        StreamsProperties.Stream orders = new StreamsProperties.Stream();
+        orders.setName("orders");
+        orders.setFailureMode(ProcessingProperties.FailureMode.BLOCK);
+        orders.setRetry(new ProcessingProperties.Retry());
+        orders.getRetry().setMaxRetries(0);
+        StreamsProperties.Stream clicks = new StreamsProperties.Stream();
+        clicks.setName("clicks");
+        streams.setStreams(List.of(orders, clicks));
+        ProcessingProperties properties = new ProcessingProperties();
+        properties.getRetry().setInitialBackoffMillis(1L);
+        RecordProcessorFactory multiStreamFactory = new RecordProcessorFactory(dynamoDbService, new DrainStatistics(),
+                new StartupMetrics(new SimpleMeterRegistry()), properties,
+                new LoggingFailureHandler(ProcessingProperties.FailureMode.SKIP),
+                new HotKeyRegistry(properties, new SimpleMeterRegistry()), null, null, null, streams, null);
+        when(dynamoDbService.saveEvents(anyList(), anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        RecordProcessorCheckpointer ordersCheckpointer = mock(RecordProcessorCheckpointer.class);
+        RecordProcessorCheckpointer clicksCheckpointer = mock(RecordProcessorCheckpointer.class);
+
+        // When
+        process(multiStreamFactory, "123456789012:orders:1700000000", ordersCheckpointer);
+        process(multiStreamFactory, "123456789012:clicks:1700000000", clicksCheckpointer);
+
+        // Then
+        verify(dynamoDbService, times(1)).saveEvents(anyList(), eq("orders"));
+        verifyNoInteractions(ordersCheckpointer);
+        verify(dynamoDbService, times(4)).saveEvents(anyList(), eq("clicks"));
+        verify(clicksCheckpointer).checkpoint();
+    }
+
     @Test
     void testMultipleProcessorCreation() {
         // When
@@ -48,7 +145,8 @@ class RecordProcessorFactoryTest {
     @Test
     void testFactoryWithNullService() {
         // Given
-        RecordProcessorFactory nullFactory = new RecordProcessorFactory(null);
+        RecordProcessorFactory nullFactory = new RecordProcessorFactory(null, null, null,
+                new ProcessingProperties(), null, null, null);
 
         // When - Create processor with null service
         ShardRecordProcessor processor = nullFactory.shardRecordProcessor();
@@ -56,4 +154,18 @@ class RecordProcessorFactoryTest {
         // Then - Processor is created but will fail when used
         assertNotNull(processor);
     }
+
+    private static void process(RecordProcessorFactory factory, String stream,
+                                RecordProcessorCheckpointer checkpointer) {
+        ShardRecordProcessor processor = factory.shardRecordProcessor(StreamIdentifier.multiStreamInstance(stream));
+        processor.initialize(InitializationInput.builder().shardId("shardId-000000000000").build());
+        processor.processRecords(ProcessRecordsInput.builder()
+                .records(List.of(KinesisClientRecord.builder()
+                        .data(ByteBuffer.wrap("{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8)))
+                        .partitionKey("key-1")
+                        .sequenceNumber("seq-001")
+                        .build()))
+                .checkpointer(checkpointer)
+                .build());
+    }
 }
@@ -0,0 +1,263 @@
+package com.example.kinesis.processor;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.config.RoutingProperties;
+import com.example.kinesis.fake.FakeDynamoDbClient;
+import com.example.kinesis.fake.FakeShardSource;
+import com.example.kinesis.hotkey.HotKeyRegistry;
+import com.example.kinesis.service.DynamoDbService;
+import com.example.kinesis.service.EventRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives {@link RecordProcessor} over several shards concurrently against
+ * {@link FakeDynamoDbClient}, asserting throughput floors and that no record
+ * is lost, written twice or checkpointed before it was persisted.
+ */
+class RecordProcessorLoadTest {
+
+    private static final String TABLE = "events";
+    private static final int SHARDS = 4;
+
+    private static Level previousLevel;
+
+    private final AtomicInteger checkpointViolations = new AtomicInteger();
+
+    // Ids acknowledged by the fake, filled as items are stored
+    private final Set<String> persistedIds = ConcurrentHashMap.newKeySet();
+
+    @BeforeAll
+    static void quietLogs() {
+        // Per-record INFO logging would dominate the measured time
+        Logger logger = (Logger) LoggerFactory.getLogger("com.example.kinesis");
+        previousLevel = logger.getLevel();
+        logger.setLevel(Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreLogs() {
+        ((Logger) LoggerFactory.getLogger("com.example.kinesis")).setLevel(previousLevel);
+    }
+
+    @Test
+    void testBatchedWritesUnderThrottlingLoseAndDuplicateNothing() throws Exception {
+        // Given
+        FakeDynamoDbClient dynamoDb = FakeDynamoDbClient.builder()
+                .latencyMicros(500)
+                .throttleRate(0.05)
+                .failureRate(0.01)
+                .storeListener(this::persisted)
+                .build();
+        List<FakeShardSource> shards = shards(10_000, 500);
+
+        // When
+        double recordsPerSecond = run(dynamoDb, shards, 25, ProcessingProperties.FailureMode.SKIP, 20);
+
+        // Then
+        assertEveryRecordWrittenOnce(dynamoDb, SHARDS * 10_000);
+        assertTrue(dynamoDb.throttled() > 0, "throttling was injected");
+        shards.forEach(shard -> assertTrue(shard.isFullyCheckpointed(), shard.shardId() + " fully checkpointed"));
+        assertEquals(0, checkpointViolations.get());
+        assertTrue(recordsPerSecond > 10_000, "batched throughput " + recordsPerSecond + " records/s");
+    }
+
+    @Test
+    void testIndividualWritesWithFailuresLoseAndDuplicateNothing() throws Exception {
+        // Given
+        FakeDynamoDbClient dynamoDb = FakeDynamoDbClient.builder()
+                .latencyMicros(100)
+                .throttleRate(0.02)
+                .failureRate(0.02)
+                .storeListener(this::persisted)
+                .build();
+        List<FakeShardSource> shards = shards(5_000, 250);
+
+        // When
+        double recordsPerSecond = run(dynamoDb, shards, 1, ProcessingProperties.FailureMode.SKIP, 20);
+
+        // Then
+        assertEveryRecordWrittenOnce(dynamoDb, SHARDS * 5_000);
+        shards.forEach(shard -> assertTrue(shard.isFullyCheckpointed(), shard.shardId() + " fully checkpointed"));
+        assertEquals(0, checkpointViolations.get());
+        assertTrue(recordsPerSecond > 2_000, "individual write throughput " + recordsPerSecond + " records/s");
+    }
+
+    @Test
+    void testCatchUpModeWritesInParallelAndLosesNothing() throws Exception {
+        // Given - each shard starts 100 s behind and reaches the tip on its last batch
+        FakeDynamoDbClient dynamoDb = FakeDynamoDbClient.builder()
+                .latencyMicros(200)
+                .throttleRate(0.02)
+                .failureRate(0.01)
+                .storeListener(this::persisted)
+                .build();
+        List<FakeShardSource> shards = shards(10_000, 1_000);
+        shards.forEach(shard -> shard.lagMillisPerRecord(10));
+        ProcessingProperties processing = new ProcessingProperties();
+        processing.getCatchUp().setEnabled(true);
+        processing.getCatchUp().setWriteConcurrency(8);
+        CatchUpController catchUp = new CatchUpController(processing, new SimpleMeterRegistry());
+
+        try {
+            // When
+            run(dynamoDb, shards, 1, ProcessingProperties.FailureMode.SKIP, 20, catchUp);
+
+            // Then
+            assertEveryRecordWrittenOnce(dynamoDb, SHARDS * 10_000);
+            shards.forEach(shard -> assertTrue(shard.isFullyCheckpointed(), shard.shardId() + " fully checkpointed"));
+            assertEquals(0, checkpointViolations.get());
+            assertTrue(dynamoDb.maxInFlight() > SHARDS, "parallel writes " + dynamoDb.maxInFlight());
+        } finally {
+            catchUp.shutdown();
+        }
+    }
+
+    @Test
+    void testCheckpointIsHeldWhenWritesKeepFailing() throws Exception {
+        // Given
+        FakeDynamoDbClient dynamoDb = FakeDynamoDbClient.builder()
+                .failureRate(1.0)
+                .storeListener(this::persisted)
+                .build();
+        List<FakeShardSource> shards = shards(200, 50);
+
+        // When
+        run(dynamoDb, shards, 25, ProcessingProperties.FailureMode.BLOCK, 1);
+
+        // Then
+        assertTrue(dynamoDb.items(TABLE).isEmpty());
+        shards.forEach(shard -> assertEquals(-1, shard.checkpointedIndex()));
+        assertEquals(0, checkpointViolations.get());
+    }
+
+    private List<FakeShardSource> shards(int recordsPerShard, int batchSize) {
+        List<FakeShardSource> shards = new ArrayList<>();
+        for (int s = 0; s < SHARDS; s++) {
+            String shardId = String.format("shardId-%012d", s);
+            PersistedPrefix verified = new PersistedPrefix(shardId);
+            shards.add(new FakeShardSource(shardId, recordsPerShard, batchSize,
+                    i -> "{\"id\":\"" + eventId(shardId, i) + "\",\"eventType\":\"LOAD\"}",
+                    verified::verifyUpTo));
+        }
+        return shards;
+    }
+
+    /**
+     * Runs every shard on its own thread, as the KCL does.
+     *
+     * @return records per second over all shards
+     */
+    private double run(FakeDynamoDbClient dynamoDb, List<FakeShardSource> shards, int batchSize,
+                       ProcessingProperties.FailureMode failureMode, int maxRetries) throws Exception {
+        return run(dynamoDb, shards, batchSize, failureMode, maxRetries, null);
+    }
+
+    private double run(FakeDynamoDbClient dynamoDb, List<FakeShardSource> shards, int batchSize,
+                       ProcessingProperties.FailureMode failureMode, int maxRetries,
+                       CatchUpController catchUp) throws Exception {
+        RoutingProperties routing = new RoutingProperties();
+        routing.setDefaultBatchSize(batchSize);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DynamoDbService dynamoDbService = new DynamoDbService(dynamoDb,
+                new EventRouter(routing, TABLE, meterRegistry));
+        HotKeyRegistry hotKeyRegistry = new HotKeyRegistry(new ProcessingProperties(), meterRegistry);
+        DrainStatistics drainStatistics = new DrainStatistics();
+        StartupMetrics startupMetrics = new StartupMetrics(meterRegistry);
+
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (FakeShardSource shard : shards) {
+                RecordProcessor processor = RecordProcessor.builder()
+                        .dynamoDbService(dynamoDbService)
+                        .drainStatistics(drainStatistics)
+                        .startupMetrics(startupMetrics)
+                        .retryPolicy(new RetryPolicy(maxRetries, 0L, 0L, 2.0))
+                        .failureHandler(new LoggingFailureHandler(failureMode))
+                        .hotKeyRegistry(hotKeyRegistry)
+                        .catchUpController(catchUp)
+                        .build();
+                futures.add(executor.submit(() -> shard.run(processor)));
+            }
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            int records = shards.stream().mapToInt(FakeShardSource::recordCount).sum();
+            return records * 1e9 / elapsedNanos;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void persisted(Map<String, AttributeValue> item) {
+        persistedIds.add(item.get("id").s());
+    }
+
+    private static void assertEveryRecordWrittenOnce(FakeDynamoDbClient dynamoDb, int expected) {
+        assertEquals(expected, storedIds(dynamoDb).size());
+        Map<String, Integer> writeCounts = dynamoDb.writeCounts(TABLE);
+        assertEquals(expected, writeCounts.size());
+        writeCounts.forEach((key, count) -> assertEquals(1, count, "writes of " + key));
+    }
+
+    private static Set<String> storedIds(FakeDynamoDbClient dynamoDb) {
+        Set<String> ids = new HashSet<>();
+        for (Map<String, AttributeValue> item : dynamoDb.items(TABLE).values()) {
+            ids.add(item.get("id").s());
+        }
+        return ids;
+    }
+
+    private static String eventId(String shardId, long index) {
+        return shardId + "-" + index;
+    }
+
+    /**
+     * Checks on every checkpoint that the records it covers are persisted.
+     * Checkpoints of a shard only move forward, so each record is looked up
+     * once and the check stays cheap inside the timed run.
+     */
+    private final class PersistedPrefix {
+
+        private final String shardId;
+        // Checkpoints arrive on the shard's thread only
+        private int verifiedUpTo = -1;
+
+        private PersistedPrefix(String shardId) {
+            this.shardId = shardId;
+        }
+
+        private void verifyUpTo(int index) {
+            for (int i = verifiedUpTo + 1; i <= index; i++) {
+                if (!persistedIds.contains(eventId(shardId, i))) {
+                    checkpointViolations.incrementAndGet();
+                    return;
+                }
+                verifiedUpTo = i;
+            }
+        }
+    }
+}
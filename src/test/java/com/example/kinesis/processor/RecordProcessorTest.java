@@ -1,7 +1,14 @@
 package com.example.kinesis.processor;
 
+import com.example.kinesis.aggregation.RollupService;
+import com.example.kinesis.config.ProcessingProperties;
+import com.example.kinesis.config.RoutingProperties;
+import com.example.kinesis.hotkey.HotKeyRegistry;
 import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.model.EventRecordSchema;
 import com.example.kinesis.service.DynamoDbService;
+import com.example.kinesis.service.EventRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,9 +23,13 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,11 +56,20 @@ class RecordProcessorTest {
     @Mock
     private LeaseLostInput leaseLostInput;
 
+    private DrainStatistics drainStatistics;
+
+    private StartupMetrics startupMetrics;
+
+    private HotKeyRegistry hotKeyRegistry;
+
     private RecordProcessor recordProcessor;
 
     @BeforeEach
     void setUp() {
-        recordProcessor = new RecordProcessor(dynamoDbService);
+        drainStatistics = new DrainStatistics();
+        startupMetrics = new StartupMetrics(new SimpleMeterRegistry());
+        hotKeyRegistry = new HotKeyRegistry(new ProcessingProperties(), new SimpleMeterRegistry());
+        recordProcessor = processorBuilder(2, ProcessingProperties.FailureMode.SKIP).build();
     }
 
     @Test
@@ -63,6 +83,80 @@ class RecordProcessorTest {
 
         // Then
         verify(initializationInput).shardId();
+        assertTrue(hotKeyRegistry.trackers().containsKey(shardId));
+    }
+
+    @Test
+    void testProcessRecordsTracksHotKeys() throws Exception {
+        // Given
+        when(initializationInput.shardId()).thenReturn("shardId-000000000001");
+        recordProcessor.initialize(initializationInput);
+        List<KinesisClientRecord> records = Arrays.asList(
+                createKinesisRecord("{\"id\":\"hot\"}", "key-1", "seq-001"),
+                createKinesisRecord("{\"id\":\"hot\"}", "key-1", "seq-002"),
+                createKinesisRecord("{\"id\":\"cold\"}", "key-2", "seq-003"));
+        when(processRecordsInput.records()).thenReturn(records);
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+
+        // When
+        recordProcessor.processRecords(processRecordsInput);
+
+        // Then
+        assertEquals("hot", hotKeyRegistry.topEventIds(1).get(0).getKey());
+        assertEquals(2, hotKeyRegistry.topEventIds(1).get(0).getCount());
+        assertEquals("key-1", hotKeyRegistry.topPartitionKeys(1).get(0).getKey());
+    }
+
+    @Test
+    void testCoalesceWritesNeverDropsADistinctItem() throws Exception {
+        // Given - "hot" carries three of the four records, enough to count as hot
+        ProcessingProperties properties = new ProcessingProperties();
+        properties.getHotKeys().setCoalesceWrites(true);
+        properties.getHotKeys().setMinHotCount(2L);
+        properties.getHotKeys().setHotShare(0.5);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        hotKeyRegistry = new HotKeyRegistry(properties, meterRegistry);
+        recordProcessor = processorBuilder(2, ProcessingProperties.FailureMode.SKIP).build();
+        when(initializationInput.shardId()).thenReturn("shardId-000000000001");
+        recordProcessor.initialize(initializationInput);
+        List<KinesisClientRecord> records = Arrays.asList(
+                createKinesisRecord("{\"id\":\"hot\",\"message\":\"v1\"}", "key-1", "seq-001"),
+                createKinesisRecord("{\"id\":\"cold\"}", "key-2", "seq-002"),
+                createKinesisRecord("{\"id\":\"hot\",\"message\":\"v2\"}", "key-1", "seq-003"),
+                createKinesisRecord("{\"id\":\"hot\",\"message\":\"v3\"}", "key-1", "seq-004"));
+        when(processRecordsInput.records()).thenReturn(records);
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+
+        // When
+        recordProcessor.processRecords(processRecordsInput);
+
+        // Then - live events are stamped when parsed, so only events parsed in the same
+        // millisecond share an item; whatever was dropped is counted, and no item is lost
+        ArgumentCaptor<List<EventRecord>> eventCaptor = ArgumentCaptor.forClass(List.class);
+        verify(dynamoDbService).saveEvents(eventCaptor.capture());
+        List<EventRecord> written = eventCaptor.getValue();
+        assertEquals(written.size(), written.stream().map(EventRecordSchema::itemKey).distinct().count());
+        assertEquals(1, eventsWithId(written, "cold").size());
+        assertTrue(eventsWithId(written, "hot").stream().anyMatch(event -> event.getData().contains("v3")));
+        assertEquals(4 - written.size(), meterRegistry.get("kinesis.consumer.hotkeys.coalesced").counter().count());
+        verify(checkpointer).checkpoint();
+    }
+
+    @Test
+    void testNewestPerItemKeepsEventsWithOtherTimestamps() {
+        // Given
+        List<EventRecord> events = Arrays.asList(
+                EventRecord.fromJson("{\"id\":\"hot\",\"message\":\"v1\"}", null, 1000L),
+                EventRecord.fromJson("{\"id\":\"hot\",\"message\":\"v2\"}", null, 2000L),
+                EventRecord.fromJson("{\"id\":\"cold\"}", null, 2000L),
+                EventRecord.fromJson("{\"id\":\"hot\",\"message\":\"v3\"}", null, 2000L),
+                EventRecord.fromJson("{\"id\":\"cold\"}", null, 2000L));
+
+        // When
+        List<EventRecord> kept = RecordProcessor.newestPerItem(events, Set.of("hot"));
+
+        // Then - v2 shares its key with v3 and is dropped, v1 is a separate item; cold is never coalesced
+        assertEquals(List.of(events.get(0), events.get(2), events.get(3), events.get(4)), kept);
     }
 
     @Test
@@ -79,15 +173,17 @@ class RecordProcessorTest {
         recordProcessor.processRecords(processRecordsInput);
 
         // Then
-        ArgumentCaptor<EventRecord> eventCaptor = ArgumentCaptor.forClass(EventRecord.class);
-        verify(dynamoDbService).saveEvent(eventCaptor.capture());
+        ArgumentCaptor<List<EventRecord>> eventCaptor = ArgumentCaptor.forClass(List.class);
+        verify(dynamoDbService).saveEvents(eventCaptor.capture());
         verify(checkpointer).checkpoint();
 
-        EventRecord capturedEvent = eventCaptor.getValue();
+        assertEquals(1, eventCaptor.getValue().size());
+        EventRecord capturedEvent = eventCaptor.getValue().get(0);
         assertNotNull(capturedEvent);
         assertNotNull(capturedEvent.getId());
         assertNotNull(capturedEvent.getData());
         assertTrue(capturedEvent.getData().contains("test-123"));
+        assertTrue(startupMetrics.timeToFirstRecordMillis() >= 0);
     }
 
     @Test
@@ -105,7 +201,9 @@ class RecordProcessorTest {
         recordProcessor.processRecords(processRecordsInput);
 
         // Then
-        verify(dynamoDbService, times(3)).saveEvent(any(EventRecord.class));
+        ArgumentCaptor<List<EventRecord>> eventCaptor = ArgumentCaptor.forClass(List.class);
+        verify(dynamoDbService).saveEvents(eventCaptor.capture());
+        assertEquals(3, eventCaptor.getValue().size());
         verify(checkpointer).checkpoint();
     }
 
@@ -120,7 +218,7 @@ class RecordProcessorTest {
         recordProcessor.processRecords(processRecordsInput);
 
         // Then
-        verify(dynamoDbService, never()).saveEvent(any(EventRecord.class));
+        verify(dynamoDbService, never()).saveEvents(anyList());
         verify(checkpointer).checkpoint();
     }
 
@@ -132,14 +230,245 @@ class RecordProcessorTest {
 
         when(processRecordsInput.records()).thenReturn(records);
         when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
-        doThrow(new RuntimeException("DynamoDB error")).when(dynamoDbService).saveEvent(any(EventRecord.class));
+        doThrow(new RuntimeException("DynamoDB error")).when(dynamoDbService).saveEvents(anyList());
+
+        // When
+        recordProcessor.processRecords(processRecordsInput);
+
+        // Then - Retries the write, then skips the record and still checkpoints
+        verify(dynamoDbService, times(3)).saveEvents(anyList());
+        verify(checkpointer).checkpoint();
+    }
+
+    @Test
+    void testRetriesOnlyFailedRecords() throws Exception {
+        // Given - record 2 fails on the first attempt only
+        List<KinesisClientRecord> records = Arrays.asList(
+                createKinesisRecord("{\"id\":\"1\"}", "key-1", "seq-001"),
+                createKinesisRecord("{\"id\":\"2\"}", "key-2", "seq-002"),
+                createKinesisRecord("{\"id\":\"3\"}", "key-3", "seq-003"));
+        when(processRecordsInput.records()).thenReturn(records);
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+        when(dynamoDbService.saveEvents(anyList()))
+                .thenAnswer(invocation -> eventsWithId(invocation.getArgument(0), "2"))
+                .thenReturn(List.of());
 
         // When
         recordProcessor.processRecords(processRecordsInput);
 
-        // Then - Should still checkpoint even if processing fails
-        verify(dynamoDbService).saveEvent(any(EventRecord.class));
+        // Then
+        ArgumentCaptor<List<EventRecord>> eventCaptor = ArgumentCaptor.forClass(List.class);
+        verify(dynamoDbService, times(2)).saveEvents(eventCaptor.capture());
+        assertEquals(3, eventCaptor.getAllValues().get(0).size());
+        assertEquals(1, eventCaptor.getAllValues().get(1).size());
+        assertEquals("2", eventCaptor.getAllValues().get(1).get(0).getId());
+        verify(checkpointer).checkpoint();
+    }
+
+    @Test
+    void testCheckpointsContiguousPrefixWhenFailureIsHeld() throws Exception {
+        // Given - record 2 always fails and the failure handler holds the checkpoint
+        RecordProcessor blockingProcessor = processorBuilder(1, ProcessingProperties.FailureMode.BLOCK).build();
+        List<KinesisClientRecord> records = Arrays.asList(
+                createKinesisRecord("{\"id\":\"1\"}", "key-1", "seq-001"),
+                createKinesisRecord("{\"id\":\"2\"}", "key-2", "seq-002"),
+                createKinesisRecord("{\"id\":\"3\"}", "key-3", "seq-003"));
+        when(processRecordsInput.records()).thenReturn(records);
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+        when(dynamoDbService.saveEvents(anyList()))
+                .thenAnswer(invocation -> eventsWithId(invocation.getArgument(0), "2"));
+
+        // When
+        blockingProcessor.processRecords(processRecordsInput);
+
+        // Then
+        verify(checkpointer).checkpoint("seq-001", 0L);
+        verify(checkpointer, never()).checkpoint();
+    }
+
+    @Test
+    void testHeldCheckpointIsNotAdvancedByLaterBatches() throws Exception {
+        // Given - record 1 keeps failing
+        RecordProcessor blockingProcessor = processorBuilder(0, ProcessingProperties.FailureMode.BLOCK).build();
+        when(processRecordsInput.records())
+                .thenReturn(Arrays.asList(createKinesisRecord("{\"id\":\"1\"}", "key-1", "seq-001")))
+                .thenReturn(Arrays.asList(createKinesisRecord("{\"id\":\"2\"}", "key-2", "seq-002")));
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+        when(dynamoDbService.saveEvents(anyList()))
+                .thenAnswer(invocation -> eventsWithId(invocation.getArgument(0), "1"));
+
+        // When
+        blockingProcessor.processRecords(processRecordsInput);
+        blockingProcessor.processRecords(processRecordsInput);
+
+        // Then - record 1 is retried before the second batch is written
+        verify(dynamoDbService, times(3)).saveEvents(anyList());
+        verifyNoInteractions(checkpointer);
+    }
+
+    @Test
+    void testHeldRecordIsRetriedAndReleasesTheCheckpoint() throws Exception {
+        // Given - record 1 fails once
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RecordProcessor blockingProcessor = processorBuilder(0, ProcessingProperties.FailureMode.BLOCK)
+                .heldShards(new HeldShards(meterRegistry))
+                .build();
+        when(initializationInput.shardId()).thenReturn("shardId-000000000001");
+        blockingProcessor.initialize(initializationInput);
+        when(processRecordsInput.records())
+                .thenReturn(Arrays.asList(
+                        createKinesisRecord("{\"id\":\"1\"}", "key-1", "seq-001"),
+                        createKinesisRecord("{\"id\":\"2\"}", "key-2", "seq-002")))
+                .thenReturn(List.of())
+                .thenReturn(Arrays.asList(createKinesisRecord("{\"id\":\"3\"}", "key-3", "seq-003")));
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+        when(dynamoDbService.saveEvents(anyList()))
+                .thenAnswer(invocation -> eventsWithId(invocation.getArgument(0), "1"))
+                .thenReturn(List.of());
+
+        // When
+        blockingProcessor.processRecords(processRecordsInput);
+
+        // Then
+        verifyNoInteractions(checkpointer);
+        assertEquals(1.0, meterRegistry.get("kinesis.consumer.checkpoint.held.shards").gauge().value());
+
+        // When - an empty poll retries the held record
+        blockingProcessor.processRecords(processRecordsInput);
+
+        // Then - the checkpoint moves past both records
+        verify(checkpointer).checkpoint("seq-002", 0L);
+        assertEquals(0.0, meterRegistry.get("kinesis.consumer.checkpoint.held.shards").gauge().value());
+
+        // When - later batches are checkpointed as usual
+        blockingProcessor.processRecords(processRecordsInput);
+
+        // Then
         verify(checkpointer).checkpoint();
+        verify(dynamoDbService, times(3)).saveEvents(anyList());
+    }
+
+    @Test
+    void testAggregatedRecordsHoldCheckpointUntilTheirWindowIsWritten() throws Exception {
+        // Given - CLICK events are only aggregated, in one-minute windows
+        RoutingProperties.Route clicks = new RoutingProperties.Route();
+        clicks.setName("clicks");
+        clicks.setEventTypes(List.of("CLICK"));
+        clicks.setTableName("click-events");
+        clicks.setAggregate(true);
+        clicks.setRawWrites(false);
+        RoutingProperties routing = new RoutingProperties();
+        routing.setRoutes(List.of(clicks));
+        ProcessingProperties processing = new ProcessingProperties();
+        processing.getAggregation().setEnabled(true);
+        processing.getAggregation().setAllowedLatenessMillis(0L);
+        RollupService rollupService = new RollupService(dynamoDbService,
+                new EventRouter(routing, "events", new SimpleMeterRegistry()), processing, new SimpleMeterRegistry());
+        RecordProcessor aggregatingProcessor = processorBuilder(0, ProcessingProperties.FailureMode.SKIP)
+                .rollupService(rollupService)
+                .build();
+        when(initializationInput.shardId()).thenReturn("shardId-000000000001");
+        aggregatingProcessor.initialize(initializationInput);
+        when(processRecordsInput.records())
+                .thenReturn(Arrays.asList(createKinesisRecord("{\"id\":\"1\",\"eventType\":\"CLICK\"}", "key-1", "seq-001", 1_000L)))
+                .thenReturn(Arrays.asList(createKinesisRecord("{\"id\":\"2\",\"eventType\":\"CLICK\"}", "key-2", "seq-002", 120_000L)));
+        // Far behind the tip, so only arrival times move the watermark
+        when(processRecordsInput.millisBehindLatest()).thenReturn(3_600_000L);
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+
+        // When - the first window is still open
+        aggregatingProcessor.processRecords(processRecordsInput);
+
+        // Then - nothing is written and nothing can be checkpointed
+        verify(dynamoDbService, never()).saveEvents(anyList());
+        verifyNoInteractions(checkpointer);
+
+        // When - a later record closes the first window
+        aggregatingProcessor.processRecords(processRecordsInput);
+
+        // Then - the rollup is written and the checkpoint stops before the open window
+        verify(dynamoDbService).saveRollup(eq("event-rollups"), any());
+        verify(checkpointer).checkpoint("seq-001", 0L);
+        verify(checkpointer, never()).checkpoint();
+    }
+
+    @Test
+    void testIdlePollAtTheTipClosesTheLastWindow() throws Exception {
+        // Given - one CLICK three minutes ago opens the shard's last window, read while catching up
+        RoutingProperties.Route clicks = new RoutingProperties.Route();
+        clicks.setName("clicks");
+        clicks.setEventTypes(List.of("CLICK"));
+        clicks.setTableName("click-events");
+        clicks.setAggregate(true);
+        clicks.setRawWrites(false);
+        RoutingProperties routing = new RoutingProperties();
+        routing.setRoutes(List.of(clicks));
+        ProcessingProperties processing = new ProcessingProperties();
+        processing.getAggregation().setEnabled(true);
+        processing.getAggregation().setAllowedLatenessMillis(1_000L);
+        RollupService rollupService = new RollupService(dynamoDbService,
+                new EventRouter(routing, "events", new SimpleMeterRegistry()), processing, new SimpleMeterRegistry());
+        RecordProcessor aggregatingProcessor = processorBuilder(0, ProcessingProperties.FailureMode.SKIP)
+                .rollupService(rollupService)
+                .build();
+        when(initializationInput.shardId()).thenReturn("shardId-000000000001");
+        aggregatingProcessor.initialize(initializationInput);
+        long arrival = System.currentTimeMillis() - 180_000L;
+        when(processRecordsInput.records())
+                .thenReturn(Arrays.asList(createKinesisRecord("{\"id\":\"1\",\"eventType\":\"CLICK\"}", "key-1", "seq-001", arrival)))
+                .thenReturn(List.of());
+        when(processRecordsInput.millisBehindLatest()).thenReturn(180_000L).thenReturn(0L);
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+        when(dynamoDbService.saveRollup(eq("event-rollups"), any())).thenReturn(true);
+
+        // When - no newer record arrives
+        aggregatingProcessor.processRecords(processRecordsInput);
+
+        // Then - the window is still open
+        verify(dynamoDbService, never()).saveRollup(any(), any());
+        verifyNoInteractions(checkpointer);
+
+        // When - an empty poll at the tip
+        aggregatingProcessor.processRecords(processRecordsInput);
+
+        // Then - the wall clock closes the window and the checkpoint moves past it
+        verify(dynamoDbService).saveRollup(eq("event-rollups"), any());
+        verify(checkpointer).checkpoint("seq-001", 0L);
+    }
+
+    @Test
+    void testOpenWindowDoesNotMoveCheckpointPastHeldRecord() throws Exception {
+        // Given - record 1 is held under BLOCK, record 2 opens an aggregation window
+        RoutingProperties.Route clicks = new RoutingProperties.Route();
+        clicks.setName("clicks");
+        clicks.setEventTypes(List.of("CLICK"));
+        clicks.setTableName("click-events");
+        clicks.setAggregate(true);
+        clicks.setRawWrites(false);
+        RoutingProperties routing = new RoutingProperties();
+        routing.setRoutes(List.of(clicks));
+        ProcessingProperties processing = new ProcessingProperties();
+        processing.getAggregation().setEnabled(true);
+        RollupService rollupService = new RollupService(dynamoDbService,
+                new EventRouter(routing, "events", new SimpleMeterRegistry()), processing, new SimpleMeterRegistry());
+        RecordProcessor aggregatingProcessor = processorBuilder(0, ProcessingProperties.FailureMode.BLOCK)
+                .rollupService(rollupService)
+                .build();
+        when(initializationInput.shardId()).thenReturn("shardId-000000000001");
+        aggregatingProcessor.initialize(initializationInput);
+        when(processRecordsInput.records()).thenReturn(Arrays.asList(
+                createKinesisRecord("{\"id\":\"1\"}", "key-1", "seq-001", 1_000L),
+                createKinesisRecord("{\"id\":\"2\",\"eventType\":\"CLICK\"}", "key-2", "seq-002", 2_000L)));
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+        when(shutdownRequestedInput.checkpointer()).thenReturn(checkpointer);
+        when(dynamoDbService.saveEvents(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        aggregatingProcessor.processRecords(processRecordsInput);
+        aggregatingProcessor.shutdownRequested(shutdownRequestedInput);
+
+        // Then - the window's limit is the held record itself, so nothing is checkpointed
+        verifyNoInteractions(checkpointer);
     }
 
     @Test
@@ -156,7 +485,7 @@ class RecordProcessorTest {
         recordProcessor.processRecords(processRecordsInput);
 
         // Then - Should process records even if checkpoint fails
-        verify(dynamoDbService).saveEvent(any(EventRecord.class));
+        verify(dynamoDbService).saveEvents(anyList());
         verify(checkpointer).checkpoint();
     }
 
@@ -182,6 +511,29 @@ class RecordProcessorTest {
 
         // Then
         verify(checkpointer).checkpoint();
+        assertEquals(1, drainStatistics.shardsDrained());
+    }
+
+    @Test
+    void testShutdownRequestedCheckpointsLastPersistedRecord() throws Exception {
+        // Given - a batch was persisted but its checkpoint failed
+        KinesisClientRecord record1 = createKinesisRecord("{\"id\":\"1\"}", "key-1", "seq-001");
+        KinesisClientRecord record2 = createKinesisRecord("{\"id\":\"2\"}", "key-2", "seq-002");
+        when(processRecordsInput.records()).thenReturn(Arrays.asList(record1, record2));
+        when(processRecordsInput.checkpointer()).thenReturn(checkpointer);
+        doThrow(new RuntimeException("Checkpoint error")).when(checkpointer).checkpoint();
+        recordProcessor.processRecords(processRecordsInput);
+
+        RecordProcessorCheckpointer shutdownCheckpointer = mock(RecordProcessorCheckpointer.class);
+        when(shutdownRequestedInput.checkpointer()).thenReturn(shutdownCheckpointer);
+
+        // When
+        recordProcessor.shutdownRequested(shutdownRequestedInput);
+
+        // Then
+        verify(shutdownCheckpointer).checkpoint("seq-002", 0L);
+        verify(shutdownCheckpointer, never()).checkpoint();
+        assertEquals(2, drainStatistics.recordsDrained());
     }
 
     @Test
@@ -207,10 +559,35 @@ class RecordProcessorTest {
         recordProcessor.processRecords(processRecordsInput);
 
         // Then - Should still save the record (EventRecord.fromJson handles invalid JSON)
-        verify(dynamoDbService).saveEvent(any(EventRecord.class));
+        verify(dynamoDbService).saveEvents(anyList());
         verify(checkpointer).checkpoint();
     }
 
+    private RecordProcessor.RecordProcessorBuilder processorBuilder(int maxRetries,
+                                                                    ProcessingProperties.FailureMode failureMode) {
+        return RecordProcessor.builder()
+                .dynamoDbService(dynamoDbService)
+                .drainStatistics(drainStatistics)
+                .startupMetrics(startupMetrics)
+                .retryPolicy(new RetryPolicy(maxRetries, 0L, 0L, 2.0))
+                .failureHandler(new LoggingFailureHandler(failureMode))
+                .hotKeyRegistry(hotKeyRegistry);
+    }
+
+    private static List<EventRecord> eventsWithId(List<EventRecord> events, String id) {
+        return events.stream().filter(event -> id.equals(event.getId())).collect(Collectors.toList());
+    }
+
+    private KinesisClientRecord createKinesisRecord(String data, String partitionKey, String sequenceNumber,
+                                                    long arrivalMillis) {
+        return KinesisClientRecord.builder()
+                .data(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)))
+                .partitionKey(partitionKey)
+                .sequenceNumber(sequenceNumber)
+                .approximateArrivalTimestamp(java.time.Instant.ofEpochMilli(arrivalMillis))
+                .build();
+    }
+
     // Helper method to create KinesisClientRecord
     private KinesisClientRecord createKinesisRecord(String data, String partitionKey, String sequenceNumber) {
         ByteBuffer buffer = ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
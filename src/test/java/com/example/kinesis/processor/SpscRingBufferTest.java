@@ -0,0 +1,69 @@
+package com.example.kinesis.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpscRingBufferTest {
+
+    @Test
+    void testCapacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new SpscRingBuffer<String>(5).capacity());
+        assertEquals(1, new SpscRingBuffer<String>(1).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new SpscRingBuffer<String>(0));
+    }
+
+    @Test
+    void testOfferFailsWhenFullAndPollPreservesOrder() {
+        // Given
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(4);
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+
+        // Then
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, ring.drainTo(drained, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void testConcurrentProducerAndConsumerSeeEveryElementInOrder() throws Exception {
+        // Given
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(64);
+        int count = 200_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!ring.offer(i)) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+
+        // When
+        producer.start();
+        int expected = 0;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (expected < count && System.currentTimeMillis() < deadline) {
+            Integer value = ring.poll();
+            if (value != null) {
+                assertEquals(expected++, value);
+            }
+        }
+        producer.join(1000);
+
+        // Then
+        assertEquals(count, expected);
+        assertNull(ring.poll());
+    }
+}
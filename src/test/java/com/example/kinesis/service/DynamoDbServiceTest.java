@@ -1,9 +1,35 @@
 package com.example.kinesis.service;
 
+import com.example.kinesis.blob.BlobNotFoundException;
+import com.example.kinesis.blob.FileBlobStore;
+import com.example.kinesis.config.RoutingProperties;
+import com.example.kinesis.config.StreamsProperties;
+import com.example.kinesis.model.EventField;
 import com.example.kinesis.model.EventRecord;
+import com.example.kinesis.model.EventRecordSchema;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 class DynamoDbServiceTest {
 
@@ -98,4 +124,217 @@ class DynamoDbServiceTest {
         assertEquals(event1.getId(), event2.getId());
         assertNotEquals(event1.getTimestamp(), event2.getTimestamp());
     }
+
+    @Test
+    void testSaveEventsMapsUnprocessedItemsBackToEvents() {
+        // Given - a batched route where DynamoDB leaves one item unprocessed
+        RoutingProperties properties = new RoutingProperties();
+        properties.setDefaultBatchSize(25);
+        EventRouter router = new EventRouter(properties, "events", new SimpleMeterRegistry());
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        DynamoDbService service = new DynamoDbService(client, router);
+
+        EventRecord first = EventRecord.builder().id("a").timestamp(1L).eventType("TEST").build();
+        EventRecord second = EventRecord.builder().id("b").timestamp(2L).eventType("TEST").build();
+        WriteRequest unprocessed = WriteRequest.builder()
+                .putRequest(PutRequest.builder().item(EventRecordSchema.toItem(second)).build())
+                .build();
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(BatchWriteItemResponse.builder()
+                .unprocessedItems(Map.of("events", List.of(unprocessed)))
+                .build());
+
+        // When
+        List<EventRecord> failed = service.saveEvents(List.of(first, second));
+
+        // Then
+        verify(client, times(1)).batchWriteItem(any(BatchWriteItemRequest.class));
+        assertEquals(1, failed.size());
+        assertSame(second, failed.get(0));
+    }
+
+    @Test
+    void testSaveEventsWritesUnbatchedRouteIndividually() {
+        // Given
+        EventRouter router = new EventRouter(new RoutingProperties(), "events", new SimpleMeterRegistry());
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        DynamoDbService service = new DynamoDbService(client, router);
+
+        // When
+        List<EventRecord> failed = service.saveEvents(List.of(
+                EventRecord.builder().id("a").timestamp(1L).build(),
+                EventRecord.builder().id("b").timestamp(2L).build()));
+
+        // Then
+        verify(client, times(2)).putItem(any(PutItemRequest.class));
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test
+    void testUpdateFieldsSendsOnlyChangedAttributes() {
+        // Given
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        DynamoDbService service = new DynamoDbService(client,
+                new EventRouter(new RoutingProperties(), "events", new SimpleMeterRegistry()));
+        EventRecord event = EventRecord.builder()
+                .id("test-5")
+                .timestamp(5L)
+                .status("SHIPPED")
+                .data("{\"large\":\"payload\"}")
+                .updatedAt(100L)
+                .build();
+
+        // When
+        boolean updated = service.updateFields(event, EnumSet.of(EventField.STATUS), true);
+
+        // Then
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(client).updateItem(captor.capture());
+        UpdateItemRequest request = captor.getValue();
+        assertTrue(updated);
+        assertEquals("events", request.tableName());
+        assertEquals("SET #status = :status, #updatedAt = :updatedAt", request.updateExpression());
+        assertEquals("attribute_not_exists(#updatedAt) OR #updatedAt < :updatedAt", request.conditionExpression());
+        assertEquals("SHIPPED", request.expressionAttributeValues().get(":status").s());
+        assertEquals("100", request.expressionAttributeValues().get(":updatedAt").n());
+        assertFalse(request.expressionAttributeValues().containsKey(":data"));
+        assertEquals(EventRecordSchema.key(event), request.key());
+    }
+
+    @Test
+    void testStreamOverloadsUseTheStreamTable() {
+        // Given
+        StreamsProperties streams = new StreamsProperties();
+        StreamsProperties.Stream orders = new StreamsProperties.Stream();
+        orders.setName("orders");
+        orders.setTableName("order-events");
+        streams.setStreams(List.of(orders));
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        DynamoDbService service = new DynamoDbService(client,
+                new EventRouter(new RoutingProperties(), streams, "events", new SimpleMeterRegistry()));
+        EventRecord event = EventRecord.builder().id("test-9").timestamp(9L).status("SHIPPED").build();
+
+        // When
+        service.saveEvent(event, "orders");
+        service.updateFields(event, EnumSet.of(EventField.STATUS), false, "orders");
+        service.updateFields(event, EnumSet.of(EventField.STATUS), false);
+
+        // Then
+        ArgumentCaptor<PutItemRequest> put = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(client).putItem(put.capture());
+        assertEquals("order-events", put.getValue().tableName());
+        ArgumentCaptor<UpdateItemRequest> update = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(client, times(2)).updateItem(update.capture());
+        assertEquals("order-events", update.getAllValues().get(0).tableName());
+        assertEquals("events", update.getAllValues().get(1).tableName());
+    }
+
+    @Test
+    void testUpdateFieldsReturnsFalseWhenStoredItemIsNewer() {
+        // Given
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        DynamoDbService service = new DynamoDbService(client,
+                new EventRouter(new RoutingProperties(), "events", new SimpleMeterRegistry()));
+        when(client.updateItem(any(UpdateItemRequest.class)))
+                .thenThrow(ConditionalCheckFailedException.builder().message("newer").build());
+        EventRecord event = EventRecord.builder().id("test-6").timestamp(6L).status("OLD").updatedAt(1L).build();
+
+        // When
+        boolean updated = service.updateFields(event, EnumSet.of(EventField.STATUS), true);
+
+        // Then
+        assertFalse(updated);
+    }
+
+    @Test
+    void testConditionalUpdateRequiresUpdatedAt() {
+        // Given
+        DynamoDbService service = new DynamoDbService(mock(DynamoDbClient.class),
+                new EventRouter(new RoutingProperties(), "events", new SimpleMeterRegistry()));
+        EventRecord event = EventRecord.builder().id("test-7").timestamp(7L).status("NEW").build();
+
+        // Then
+        assertThrows(IllegalArgumentException.class,
+                () -> service.updateFields(event, EnumSet.of(EventField.STATUS), true));
+    }
+
+    @Test
+    void testSaveEventOffloadsLargePayload(@TempDir Path root) {
+        // Given
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        DynamoDbService service = new DynamoDbService(client,
+                new EventRouter(new RoutingProperties(), "events", new SimpleMeterRegistry()),
+                new PayloadOffloader(new FileBlobStore(root), 1024));
+        EventRecord event = EventRecord.builder()
+                .id("test-8")
+                .timestamp(8L)
+                .eventType("TEST")
+                .data("{\"blob\":\"" + "a".repeat(4096) + "\"}")
+                .build();
+
+        // When
+        service.saveEvent(event);
+
+        // Then
+        ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(client).putItem(captor.capture());
+        Map<String, AttributeValue> item = captor.getValue().item();
+        assertFalse(item.containsKey(EventRecordSchema.DATA));
+        assertEquals("test-8/8.json", item.get(EventRecordSchema.DATA_REF).s());
+        assertNotNull(item.get(EventRecordSchema.DATA_CHECKSUM).s());
+    }
+
+    @Test
+    void testRetriedSaveUploadsThePayloadOnce(@TempDir Path root) {
+        // Given
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        FileBlobStore blobStore = spy(new FileBlobStore(root));
+        DynamoDbService service = new DynamoDbService(client,
+                new EventRouter(new RoutingProperties(), "events", new SimpleMeterRegistry()),
+                new PayloadOffloader(blobStore, 1024));
+        EventRecord event = EventRecord.builder()
+                .id("test-9")
+                .timestamp(9L)
+                .eventType("TEST")
+                .data("{\"blob\":\"" + "b".repeat(4096) + "\"}")
+                .build();
+        when(client.putItem(any(PutItemRequest.class)))
+                .thenThrow(new RuntimeException("throttled"))
+                .thenReturn(null);
+
+        // When
+        assertThrows(RuntimeException.class, () -> service.saveEvent(event));
+        service.saveEvent(event);
+
+        // Then
+        verify(client, times(2)).putItem(any(PutItemRequest.class));
+        verify(blobStore, times(1)).put(eq("test-9/9.json"), any());
+    }
+
+    @Test
+    void testInlineDataUpdateDeletesTheReplacedBlob(@TempDir Path root) {
+        // Given
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        FileBlobStore blobStore = new FileBlobStore(root);
+        DynamoDbService service = new DynamoDbService(client,
+                new EventRouter(new RoutingProperties(), "events", new SimpleMeterRegistry()),
+                new PayloadOffloader(blobStore, 1024));
+        EventRecord event = EventRecord.builder()
+                .id("test-10")
+                .timestamp(10L)
+                .eventType("TEST")
+                .data("{\"blob\":\"" + "c".repeat(4096) + "\"}")
+                .build();
+        service.updateFields(event, EnumSet.of(EventField.DATA), false);
+        assertNotNull(blobStore.get("test-10/10.json"));
+
+        // When
+        event.setData("{\"small\":true}");
+        service.updateFields(event, EnumSet.of(EventField.DATA), false);
+
+        // Then
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(client, times(2)).updateItem(captor.capture());
+        assertTrue(captor.getValue().updateExpression().contains("REMOVE"));
+        assertThrows(BlobNotFoundException.class, () -> blobStore.get("test-10/10.json"));
+    }
 }
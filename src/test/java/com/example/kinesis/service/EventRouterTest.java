@@ -0,0 +1,155 @@
+package com.example.kinesis.service;
+
+import com.example.kinesis.config.RoutingProperties;
+import com.example.kinesis.config.StreamsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRouterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testUnroutedEventTypeUsesDefaultTable() {
+        // Given
+        EventRouter router = new EventRouter(new RoutingProperties(), "events", meterRegistry);
+
+        // When
+        Route route = router.route("USER_ACTION");
+
+        // Then
+        assertSame(router.defaultRoute(), route);
+        assertEquals("events", route.getTableName());
+        assertFalse(route.isBatched());
+    }
+
+    @Test
+    void testNullEventTypeUsesDefaultTable() {
+        // Given
+        EventRouter router = new EventRouter(new RoutingProperties(), "events", meterRegistry);
+
+        // Then
+        assertSame(router.defaultRoute(), router.route(null));
+    }
+
+    @Test
+    void testConfiguredRouteIsResolved() {
+        // Given
+        RoutingProperties properties = new RoutingProperties();
+        properties.setRoutes(List.of(route("telemetry", "telemetry-events", 25, "TELEMETRY", "HEARTBEAT")));
+        EventRouter router = new EventRouter(properties, "events", meterRegistry);
+
+        // When
+        Route telemetry = router.route("TELEMETRY");
+        Route heartbeat = router.route("HEARTBEAT");
+
+        // Then
+        assertSame(telemetry, heartbeat);
+        assertEquals("telemetry", telemetry.getName());
+        assertEquals("telemetry-events", telemetry.getTableName());
+        assertTrue(telemetry.isBatched());
+        assertEquals(2, router.routes().size());
+    }
+
+    @Test
+    void testDuplicateEventTypeIsRejected() {
+        // Given
+        RoutingProperties properties = new RoutingProperties();
+        properties.setRoutes(List.of(
+                route("a", "table-a", 1, "TELEMETRY"),
+                route("b", "table-b", 1, "TELEMETRY")));
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> new EventRouter(properties, "events", meterRegistry));
+    }
+
+    @Test
+    void testBatchSizeAboveDynamoDbLimitIsRejected() {
+        // Given
+        RoutingProperties properties = new RoutingProperties();
+        properties.setRoutes(List.of(route("a", "table-a", 26, "TELEMETRY")));
+
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> new EventRouter(properties, "events", meterRegistry));
+    }
+
+    @Test
+    void testRouteMetricsAreTagged() {
+        // Given
+        RoutingProperties properties = new RoutingProperties();
+        properties.setRoutes(List.of(route("telemetry", "telemetry-events", 10, "TELEMETRY")));
+        EventRouter router = new EventRouter(properties, "events", meterRegistry);
+
+        // When
+        router.route("TELEMETRY").recordWritten(3);
+        router.route("TELEMETRY").recordFailed(1);
+
+        // Then
+        assertEquals(3.0, meterRegistry.get("kinesis.consumer.route.records")
+                .tag("route", "telemetry").tag("outcome", "written").counter().count());
+        assertEquals(1.0, meterRegistry.get("kinesis.consumer.route.records")
+                .tag("route", "telemetry").tag("outcome", "failed").counter().count());
+    }
+
+    @Test
+    void testStreamRouteIsUsedForUnroutedEventTypes() {
+        // Given
+        RoutingProperties properties = new RoutingProperties();
+        properties.setRoutes(List.of(route("telemetry", "telemetry-events", 25, "TELEMETRY")));
+        StreamsProperties streams = new StreamsProperties();
+        streams.setStreams(List.of(stream("orders", "orders-events", 10), stream("clicks", null, 1)));
+        EventRouter router = new EventRouter(properties, streams, "events", meterRegistry);
+
+        // When
+        Route orders = router.route("orders", "ORDER_PLACED");
+        Route clicks = router.route("clicks", "CLICK");
+
+        // Then
+        assertEquals("stream-orders", orders.getName());
+        assertEquals("orders-events", orders.getTableName());
+        assertTrue(orders.isBatched());
+        assertEquals("events", clicks.getTableName());
+        assertEquals("telemetry", router.route("orders", "TELEMETRY").getName());
+        assertSame(router.defaultRoute(), router.route("unknown", "CLICK"));
+        assertSame(router.defaultRoute(), router.route(null, "ORDER_PLACED"));
+        assertEquals(4, router.routes().size());
+    }
+
+    @Test
+    void testDuplicateStreamIsRejected() {
+        // Given
+        StreamsProperties streams = new StreamsProperties();
+        streams.setStreams(List.of(stream("orders", "a", 1), stream("orders", "b", 1)));
+
+        // Then
+        assertThrows(IllegalStateException.class,
+                () -> new EventRouter(new RoutingProperties(), streams, "events", meterRegistry));
+    }
+
+    private StreamsProperties.Stream stream(String name, String table, int batchSize) {
+        StreamsProperties.Stream stream = new StreamsProperties.Stream();
+        stream.setName(name);
+        stream.setTableName(table);
+        stream.setBatchSize(batchSize);
+        return stream;
+    }
+
+    private RoutingProperties.Route route(String name, String table, int batchSize, String... eventTypes) {
+        RoutingProperties.Route route = new RoutingProperties.Route();
+        route.setName(name);
+        route.setTableName(table);
+        route.setBatchSize(batchSize);
+        route.setEventTypes(List.of(eventTypes));
+        return route;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.kinesis.service;
+
+import com.example.kinesis.blob.BlobNotFoundException;
+import com.example.kinesis.blob.FileBlobStore;
+import com.example.kinesis.model.EventRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PayloadOffloaderTest {
+
+    @TempDir
+    Path root;
+
+    private FileBlobStore blobStore;
+
+    private PayloadOffloader offloader;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new FileBlobStore(root);
+        offloader = new PayloadOffloader(blobStore, 100);
+    }
+
+    @Test
+    void testSmallPayloadStaysInline() {
+        // Given
+        EventRecord event = event("{\"small\":true}");
+
+        // Then
+        assertSame(event, offloader.offload(event));
+    }
+
+    @Test
+    void testLargePayloadIsReplacedByPointerAndChecksum() {
+        // Given
+        String payload = "{\"data\":\"" + "x".repeat(200) + "\"}";
+        EventRecord event = event(payload);
+
+        // When
+        EventRecord stored = offloader.offload(event);
+
+        // Then
+        assertNotSame(event, stored);
+        assertNull(stored.getData());
+        assertEquals("evt-1/42.json", stored.getDataRef());
+        assertNotNull(stored.getDataChecksum());
+        assertEquals(payload, event.getData());
+        assertEquals(payload, new String(blobStore.get(stored.getDataRef()), StandardCharsets.UTF_8));
+
+        // When - resolved after a read
+        String resolved = offloader.resolve(stored);
+
+        // Then
+        assertEquals(payload, resolved);
+        assertEquals(payload, stored.getData());
+    }
+
+    @Test
+    void testThresholdCountsUtf8Bytes() {
+        // Given - 40 characters but 120 bytes
+        EventRecord event = event("€".repeat(40));
+
+        // Then
+        assertNotSame(event, offloader.offload(event));
+    }
+
+    @Test
+    void testChecksumMismatchIsDetected() {
+        // Given
+        EventRecord stored = offloader.offload(event("y".repeat(200)));
+        blobStore.put(stored.getDataRef(), "tampered".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> offloader.resolve(stored));
+    }
+
+    @Test
+    void testRetriedOffloadUploadsOnlyChangedPayloads() {
+        // Given
+        FileBlobStore store = spy(blobStore);
+        PayloadOffloader retrying = new PayloadOffloader(store, 100);
+        EventRecord event = event("r".repeat(200));
+
+        // When - the same write attempted twice, then with a new payload
+        EventRecord first = retrying.offload(event);
+        EventRecord second = retrying.offload(event);
+        event.setData("s".repeat(200));
+        EventRecord changed = retrying.offload(event);
+
+        // Then
+        verify(store, times(2)).put(eq("evt-1/42.json"), any());
+        assertEquals(first, second);
+        assertNotEquals(first.getDataChecksum(), changed.getDataChecksum());
+        assertEquals("s".repeat(200), retrying.resolve(changed));
+    }
+
+    @Test
+    void testDiscardDeletesTheBlob() {
+        // Given
+        EventRecord stored = offloader.offload(event("d".repeat(200)));
+
+        // When
+        offloader.discard(stored);
+        offloader.discard(stored);
+
+        // Then
+        assertThrows(BlobNotFoundException.class, () -> blobStore.get("evt-1/42.json"));
+    }
+
+    @Test
+    void testDisabledOffloaderKeepsEverythingInline() {
+        EventRecord event = event("z".repeat(1_000_000));
+
+        assertSame(event, PayloadOffloader.disabled().offload(event));
+    }
+
+    private static EventRecord event(String data) {
+        return EventRecord.builder()
+                .id("evt-1")
+                .timestamp(42L)
+                .eventType("TEST")
+                .data(data)
+                .status("PROCESSED")
+                .build();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.kinesis.service;
+
+import com.example.kinesis.model.EventField;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateExpressionsTest {
+
+    private final UpdateExpressions expressions = new UpdateExpressions();
+
+    @Test
+    void testSetAndRemoveClauses() {
+        // When
+        UpdateExpressions.Expression expression = expressions.get(
+                UpdateExpressions.mask(EventField.STATUS) | UpdateExpressions.mask(EventField.EVENT_TYPE),
+                UpdateExpressions.mask(EventField.DATA), false);
+
+        // Then
+        assertEquals("SET #eventType = :eventType, #status = :status REMOVE #data", expression.getUpdateExpression());
+        assertNull(expression.getConditionExpression());
+        assertEquals(Map.of("#eventType", "eventType", "#status", "status", "#data", "data"),
+                expression.getAttributeNames());
+    }
+
+    @Test
+    void testNewerCondition() {
+        // When
+        UpdateExpressions.Expression expression = expressions.get(
+                UpdateExpressions.mask(EventField.STATUS) | UpdateExpressions.mask(EventField.UPDATED_AT), 0, true);
+
+        // Then
+        assertEquals("SET #status = :status, #updatedAt = :updatedAt", expression.getUpdateExpression());
+        assertEquals("attribute_not_exists(#updatedAt) OR #updatedAt < :updatedAt",
+                expression.getConditionExpression());
+    }
+
+    @Test
+    void testExpressionsAreCachedPerFieldSet() {
+        // When
+        UpdateExpressions.Expression first = expressions.get(UpdateExpressions.mask(EventField.STATUS), 0, false);
+        UpdateExpressions.Expression second = expressions.get(UpdateExpressions.mask(EventField.STATUS), 0, false);
+        UpdateExpressions.Expression conditional = expressions.get(UpdateExpressions.mask(EventField.STATUS), 0, true);
+
+        // Then
+        assertSame(first, second);
+        assertNotSame(first, conditional);
+    }
+
+    @Test
+    void testEmptyOrOverlappingMasksAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> expressions.get(0, 0, false));
+        int status = UpdateExpressions.mask(EventField.STATUS);
+        assertThrows(IllegalArgumentException.class, () -> expressions.get(status, status, false));
+    }
+}